@@ -0,0 +1,42 @@
+package com.trian.zimswitch.simulator.iso;
+
+import org.jpos.iso.ISOMsg;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IsoMessageBuilderBenchmark {
+
+    private IsoMessageBuilder builder;
+    private MessageTemplate template;
+    private final Map<String, String> overrides = new HashMap<>();
+
+    @Setup
+    public void setup() throws Exception {
+        builder = new IsoMessageBuilder(IsoPackagerFactory.create("generic"));
+        template = builder.template("1200", overrides);
+    }
+
+    @Benchmark
+    public ISOMsg templateNewMessage() {
+        return template.newMessage();
+    }
+
+    @Benchmark
+    public ISOMsg build1200() {
+        return builder.build1200(overrides);
+    }
+
+    @Benchmark
+    public ISOMsg buildEcho() throws Exception {
+        return builder.buildEcho(overrides);
+    }
+}
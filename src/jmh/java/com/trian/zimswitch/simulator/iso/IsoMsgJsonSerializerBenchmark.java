@@ -0,0 +1,49 @@
+package com.trian.zimswitch.simulator.iso;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOPackager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IsoMsgJsonSerializerBenchmark {
+
+    private ISOMsg request;
+    private ISOMsg response;
+    private ObjectMapper mapper;
+
+    @Setup
+    public void setup() throws Exception {
+        ISOPackager packager = IsoPackagerFactory.create("generic");
+        FieldRedactor redactor = new FieldRedactor(packager, "");
+        mapper = new ObjectMapper()
+                .registerModule(new SimpleModule().addSerializer(ISOMsg.class, new IsoMsgJsonSerializer(redactor)));
+        IsoMessageBuilder builder = new IsoMessageBuilder(packager);
+        request = builder.build1200(new HashMap<>());
+        // Round-trip so the message looks like one read off the wire (bitmap present, typed fields)
+        response = new ISOMsg();
+        response.setPackager(request.getPackager());
+        response.unpack(request.pack());
+        response.setResponseMTI();
+        response.set(39, "00");
+    }
+
+    @Benchmark
+    public byte[] builtRequest() throws Exception {
+        return mapper.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public byte[] unpackedResponse() throws Exception {
+        return mapper.writeValueAsBytes(response);
+    }
+}
@@ -0,0 +1,62 @@
+package com.trian.zimswitch.simulator.iso;
+
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOPackager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pack/unpack of the messages the simulator sends, for each packager codec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IsoPackagerBenchmark {
+
+    @Param({"generic", "compiled"})
+    public String codec;
+
+    @Param({"1200", "1400", "0800"})
+    public String mti;
+
+    private ISOPackager packager;
+    private ISOMsg msg;
+    private byte[] packed;
+
+    @Setup
+    public void setup() throws Exception {
+        packager = IsoPackagerFactory.create(codec);
+        IsoMessageBuilder builder = new IsoMessageBuilder(packager);
+        Map<String, String> overrides = new HashMap<>();
+        switch (mti) {
+            case "1200":
+                msg = builder.build1200(overrides);
+                break;
+            case "1400":
+                msg = builder.build1400(overrides);
+                break;
+            default:
+                msg = builder.buildEcho(overrides);
+        }
+        packed = msg.pack();
+    }
+
+    @Benchmark
+    public byte[] pack() throws Exception {
+        return msg.pack();
+    }
+
+    @Benchmark
+    public ISOMsg unpack() throws Exception {
+        ISOMsg m = new ISOMsg();
+        m.setPackager(packager);
+        m.unpack(packed);
+        return m;
+    }
+}
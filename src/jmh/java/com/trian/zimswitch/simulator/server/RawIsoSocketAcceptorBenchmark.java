@@ -0,0 +1,34 @@
+package com.trian.zimswitch.simulator.server;
+
+import com.trian.zimswitch.simulator.iso.IsoMessageBuilder;
+import com.trian.zimswitch.simulator.iso.IsoPackagerFactory;
+import org.jpos.iso.ISOMsg;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RawIsoSocketAcceptorBenchmark {
+
+    @Param({"1200", "0800"})
+    public String mti;
+
+    private ISOMsg request;
+
+    @Setup
+    public void setup() throws Exception {
+        IsoMessageBuilder builder = new IsoMessageBuilder(IsoPackagerFactory.create("generic"));
+        request = "1200".equals(mti) ? builder.build1200(new HashMap<>()) : builder.buildEcho(new HashMap<>());
+    }
+
+    @Benchmark
+    public ISOMsg buildResponse() throws Exception {
+        return RawIsoSocketAcceptor.buildResponse(request, null);
+    }
+}
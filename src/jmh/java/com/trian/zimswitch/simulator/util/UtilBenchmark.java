@@ -0,0 +1,45 @@
+package com.trian.zimswitch.simulator.util;
+
+import com.trian.zimswitch.simulator.iso.FieldRedactor;
+import com.trian.zimswitch.simulator.iso.IsoPackagerFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UtilBenchmark {
+
+    private final String pan = "4929390123456781";
+    private final String track2 = "4929390123456781=27122011234567890";
+    private FieldRedactor redactor;
+
+    @Setup
+    public void setup() throws Exception {
+        redactor = new FieldRedactor(IsoPackagerFactory.create("generic"), "");
+    }
+
+    @Benchmark
+    public FieldRedactor.Redacted panMask() {
+        return redactor.redact(2, pan);
+    }
+
+    @Benchmark
+    public FieldRedactor.Redacted track2Mask() {
+        return redactor.redact(35, track2);
+    }
+
+    @Benchmark
+    public String nextStan() {
+        return StanGenerator.nextStan();
+    }
+
+    @Benchmark
+    public String nextRrn() {
+        return RrnGenerator.nextRrn();
+    }
+}
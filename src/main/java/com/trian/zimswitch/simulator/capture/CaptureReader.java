@@ -0,0 +1,112 @@
+package com.trian.zimswitch.simulator.capture;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Sequential reader over {@link FrameCapture} segments (memory-mapped, read-only).
+ */
+public final class CaptureReader implements AutoCloseable {
+
+    /**
+     * One captured frame; payload excludes the header/TPDU.
+     */
+    public static final class Frame {
+        public final long epochNanos;
+        public final FrameCapture.Source source;
+        public final byte direction;
+        public final byte[] payload;
+
+        Frame(long epochNanos, FrameCapture.Source source, byte direction, byte[] payload) {
+            this.epochNanos = epochNanos;
+            this.source = source;
+            this.direction = direction;
+            this.payload = payload;
+        }
+    }
+
+    private static final FrameCapture.Source[] SOURCES = FrameCapture.Source.values();
+
+    private final List<Path> files;
+    private int next;
+    private Path current;
+    private FileChannel channel;
+    private MappedByteBuffer buf;
+
+    public CaptureReader(List<Path> files) {
+        this.files = files;
+    }
+
+    /**
+     * Capture segments in a directory (or the single file given), oldest first.
+     */
+    public static List<Path> segments(Path dirOrFile) throws IOException {
+        if (!Files.isDirectory(dirOrFile)) return List.of(dirOrFile);
+        try (Stream<Path> s = Files.list(dirOrFile)) {
+            List<Path> out = new ArrayList<>();
+            s.filter(p -> p.getFileName().toString().endsWith(".isoc")).sorted().forEach(out::add);
+            return out;
+        }
+    }
+
+    /**
+     * @return the next frame, or null at the end of the last segment
+     * @throws IOException also for a record that does not parse (corrupt segment)
+     */
+    public Frame next() throws IOException {
+        while (true) {
+            if (buf == null && !open()) return null;
+            if (buf.remaining() >= 4) {
+                int len = buf.getInt();
+                if (len > 0 && buf.remaining() >= FrameCapture.RECORD_OVERHEAD - 4 + len) {
+                    long ts = buf.getLong();
+                    int sourceIndex = buf.get() & 0xFF;
+                    byte direction = buf.get();
+                    int header = buf.get() & 0xFF;
+                    if (header > len || sourceIndex >= SOURCES.length) {
+                        throw new IOException("Corrupt capture segment " + current + " at offset " + (buf.position() - FrameCapture.RECORD_OVERHEAD)
+                                + ": header length " + header + ", payload length " + len + ", source " + sourceIndex);
+                    }
+                    FrameCapture.Source source = SOURCES[sourceIndex];
+                    byte[] payload = new byte[len - header];
+                    buf.position(buf.position() + header);
+                    buf.get(payload);
+                    return new Frame(ts, source, direction, payload);
+                }
+            }
+            closeSegment();
+        }
+    }
+
+    private boolean open() throws IOException {
+        while (next < files.size()) {
+            Path p = files.get(next++);
+            current = p;
+            channel = FileChannel.open(p, StandardOpenOption.READ);
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.remaining() >= 6 && buf.getInt() == FrameCapture.MAGIC && buf.getShort() == FrameCapture.VERSION) {
+                return true;
+            }
+            closeSegment();
+        }
+        return false;
+    }
+
+    private void closeSegment() throws IOException {
+        buf = null;
+        if (channel != null) channel.close();
+        channel = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+}
@@ -0,0 +1,55 @@
+package com.trian.zimswitch.simulator.capture;
+
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOPackager;
+import org.jpos.iso.channel.NACChannel;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * NACChannel that hands every packed message it sends or receives to {@link FrameCapture}.
+ * Only the ISO message bytes are recorded (NAC length and TPDU are written separately by the channel).
+ * ISOServer clones its channel per session, and clones keep this behaviour.
+ */
+public class CapturingNACChannel extends NACChannel {
+    private final FrameCapture capture;
+    private final FrameCapture.Source source;
+    // Frames read in full, whether or not they then unpacked
+    private final AtomicLong framesRead = new AtomicLong();
+
+    public CapturingNACChannel(String host, int port, ISOPackager packager, byte[] tpdu,
+                               FrameCapture capture, FrameCapture.Source source) {
+        super(host, port, packager, tpdu);
+        this.capture = capture;
+        this.source = source;
+    }
+
+    public CapturingNACChannel(ISOPackager packager, byte[] tpdu, FrameCapture capture, FrameCapture.Source source)
+            throws IOException {
+        super(packager, tpdu);
+        this.capture = capture;
+        this.source = source;
+    }
+
+    @Override
+    protected void sendMessage(byte[] b, int offset, int len) throws IOException {
+        super.sendMessage(b, offset, len);
+        capture.record(source, FrameCapture.OUT, 0, b, offset, len);
+    }
+
+    @Override
+    protected void getMessage(byte[] b, int offset, int len) throws IOException, ISOException {
+        super.getMessage(b, offset, len);
+        framesRead.incrementAndGet();
+        capture.record(source, FrameCapture.IN, 0, b, offset, len);
+    }
+
+    /**
+     * Lets a reader tell an unpack failure (frame consumed, stream still in step) from a rejected
+     * length header (stream out of step).
+     */
+    public long getFramesRead() {
+        return framesRead.get();
+    }
+}
@@ -0,0 +1,239 @@
+package com.trian.zimswitch.simulator.capture;
+
+import com.trian.zimswitch.simulator.iso.FieldRedactor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends raw ISO frames to memory-mapped capture segments under capture.dir.
+ * <p>
+ * Segment layout: int magic "ISOC", short version, then records of
+ * <pre>
+ *   int payloadLength, long epochNanos, byte source, byte direction, byte headerLength, payload
+ * </pre>
+ * where payload is the frame as seen on the wire after the length header (header/TPDU included,
+ * headerLength bytes long). A payloadLength of 0 ends the segment; a new segment is started when a
+ * record does not fit. Appends are a copy into the mapping, so capture costs no syscall per frame;
+ * concurrent writers reserve their slot with an atomic position instead of taking a lock.
+ * <p>
+ * With capture.redact (the default) sensitive fields are masked by the {@link FieldRedactor} before
+ * a frame is written, at the cost of an unpack/pack per frame; frames that cannot be redacted are
+ * skipped, never written in the clear. Turn it off for byte-exact captures in test environments.
+ */
+@Component
+public class FrameCapture implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(FrameCapture.class);
+
+    static final int MAGIC = 0x49534F43; // "ISOC"
+    static final short VERSION = 1;
+    static final int RECORD_OVERHEAD = 4 + 8 + 3;
+    private static final int HEADER = 4 + 2;
+
+    public static final byte IN = 0;
+    public static final byte OUT = 1;
+
+    /**
+     * Where a frame was seen.
+     */
+    public enum Source {
+        CLIENT, JPOS_ACCEPTOR, RAW_ACCEPTOR, NIO_ACCEPTOR
+    }
+
+    private final Path dir;
+    private final int segmentSize;
+    // Wall-clock nanos = base + System.nanoTime()
+    private final long epochNanosBase = System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong segments = new AtomicLong();
+    private final AtomicLong unredactable = new AtomicLong();
+    private final FieldRedactor redactor;
+    private volatile boolean enabled;
+    private volatile Segment segment;
+
+    public FrameCapture(@Value("${capture.enabled:false}") boolean enabled,
+                        @Value("${capture.dir:captures}") String dir,
+                        @Value("${capture.segment-size-mb:64}") int segmentSizeMb,
+                        @Value("${capture.redact:true}") boolean redact,
+                        FieldRedactor redactor) {
+        this.dir = Paths.get(dir);
+        this.redactor = redact ? redactor : null;
+        this.segmentSize = Math.max(1, segmentSizeMb) * 1024 * 1024;
+        if (enabled) start();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized void start() {
+        if (enabled) return;
+        enabled = true;
+        log.info("Frame capture started in {} ({} MB segments, {})", dir.toAbsolutePath(), segmentSize / (1024 * 1024),
+                redactor != null ? "redacted" : "raw");
+    }
+
+    public synchronized void stop() {
+        if (!enabled) return;
+        enabled = false;
+        closeSegment();
+        log.info("Frame capture stopped ({} frames)", frames.get());
+    }
+
+    public void record(Source source, byte direction, int headerLength, byte[] b) {
+        record(source, direction, headerLength, b, 0, b.length);
+    }
+
+    public void record(Source source, byte direction, int headerLength, byte[] b, int offset, int len) {
+        if (!enabled || len <= 0) return;
+        long ts = epochNanosBase + System.nanoTime();
+        if (redactor != null) {
+            b = redactor.redactFrame(b, offset, len, headerLength);
+            if (b == null) {
+                unredactable.incrementAndGet();
+                return;
+            }
+            offset = 0;
+            len = b.length;
+        }
+        append(ts, source, direction, headerLength, b, offset, len, null, 0);
+    }
+
+    /**
+     * Records a frame sent as separate header and body (gathering writes) without joining them,
+     * unless it has to be redacted.
+     */
+    public void record(Source source, byte direction, byte[] header, byte[] body) {
+        if (!enabled) return;
+        if (redactor != null) {
+            byte[] frame = new byte[header.length + body.length];
+            System.arraycopy(header, 0, frame, 0, header.length);
+            System.arraycopy(body, 0, frame, header.length, body.length);
+            record(source, direction, header.length, frame, 0, frame.length);
+            return;
+        }
+        append(epochNanosBase + System.nanoTime(), source, direction, header.length, header, 0, header.length, body, body.length);
+    }
+
+    private void append(long ts, Source source, byte direction, int headerLength,
+                        byte[] b, int offset, int len, byte[] tail, int tailLen) {
+        int total = len + tailLen;
+        if (total <= 0) return;
+        int size = RECORD_OVERHEAD + total;
+        Segment s = segment;
+        int pos;
+        // Threads only contend on the position; the lock is taken to roll to a new segment
+        while (s == null || (pos = s.reserve(size)) < 0) {
+            s = roll(s, total);
+            if (s == null) return;
+        }
+        MappedByteBuffer m = s.buf;
+        m.putLong(pos + 4, ts).put(pos + 12, (byte) source.ordinal()).put(pos + 13, direction).put(pos + 14, (byte) headerLength);
+        m.put(pos + RECORD_OVERHEAD, b, offset, len);
+        if (tail != null) m.put(pos + RECORD_OVERHEAD + len, tail, 0, tailLen);
+        // Length last: until it is set the record reads as the end of the segment (the file is zero-filled)
+        m.putInt(pos, total);
+        frames.incrementAndGet();
+        bytes.addAndGet(total);
+    }
+
+    /**
+     * Starts a new segment with room for a record of len bytes, unless another thread already
+     * replaced full. Returns the current segment, or null when capture is off.
+     */
+    private synchronized Segment roll(Segment full, int len) {
+        if (!enabled) return null;
+        if (segment != full) return segment;
+        closeSegment();
+        try {
+            Files.createDirectories(dir);
+            int size = Math.max(segmentSize, HEADER + RECORD_OVERHEAD + len + 4);
+            Path path = dir.resolve(String.format("capture-%d-%04d.isoc", System.currentTimeMillis(), segments.incrementAndGet()));
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buf.putInt(0, MAGIC).putShort(4, VERSION);
+            segment = new Segment(path, channel, buf);
+            log.info("Capture segment {}", path);
+            return segment;
+        } catch (IOException e) {
+            log.warn("Frame capture failed, disabling: {}", e.getMessage());
+            enabled = false;
+            return null;
+        }
+    }
+
+    private synchronized void closeSegment() {
+        Segment s = segment;
+        if (s == null) return;
+        segment = null;
+        // Writers still holding s finish into the mapping, which outlives the channel
+        try {
+            s.buf.force();
+            s.channel.close();
+        } catch (IOException e) {
+            log.warn("Closing capture segment {}: {}", s.path, e.getMessage());
+        }
+    }
+
+    /**
+     * A mapped segment; records are placed by advancing position atomically.
+     */
+    private static final class Segment {
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buf;
+        final AtomicInteger position = new AtomicInteger(HEADER);
+
+        Segment(Path path, FileChannel channel, MappedByteBuffer buf) {
+            this.path = path;
+            this.channel = channel;
+            this.buf = buf;
+        }
+
+        /**
+         * Offset of size free bytes (leaving room for the end marker), or -1 if the segment is full.
+         */
+        int reserve(int size) {
+            int pos = position.getAndAdd(size);
+            return pos >= 0 && (long) pos + size + 4 <= buf.capacity() ? pos : -1;
+        }
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", enabled);
+        m.put("dir", dir.toAbsolutePath().toString());
+        Segment s = segment;
+        m.put("segment", s != null ? s.path.getFileName().toString() : null);
+        m.put("segments", segments.get());
+        m.put("frames", frames.get());
+        m.put("bytes", bytes.get());
+        m.put("redacted", redactor != null);
+        m.put("skippedUnredactable", unredactable.get());
+        return m;
+    }
+
+    @Override
+    public synchronized void close() {
+        enabled = false;
+        closeSegment();
+    }
+}
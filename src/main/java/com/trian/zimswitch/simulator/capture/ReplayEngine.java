@@ -0,0 +1,195 @@
+package com.trian.zimswitch.simulator.capture;
+
+import com.trian.zimswitch.simulator.client.IsoChannelPool;
+import com.trian.zimswitch.simulator.loadgen.LatencyRecorder;
+import com.trian.zimswitch.simulator.util.IsoClock;
+import com.trian.zimswitch.simulator.util.RrnGenerator;
+import com.trian.zimswitch.simulator.util.StanGenerator;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOPackager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Streams captured request frames back to the gateway through the channel pool. Frames are sent
+ * at their original offsets from the first request divided by the speed factor (or back to back at
+ * speed 0) without waiting for responses, so the gateway sees the captured arrival pattern.
+ * Latency is measured from the scheduled instant, as in the load generator.
+ */
+@Component
+public class ReplayEngine {
+    private static final Logger log = LoggerFactory.getLogger(ReplayEngine.class);
+
+    private final IsoChannelPool pool;
+    private final ISOPackager packager;
+    private final FrameCapture capture;
+    private volatile Run current;
+
+    public ReplayEngine(IsoChannelPool pool, ISOPackager packager, FrameCapture capture) {
+        this.pool = pool;
+        this.packager = packager;
+        this.capture = capture;
+    }
+
+    public synchronized void start(ReplayRequest request) throws Exception {
+        if (current != null && current.isRunning()) {
+            throw new IllegalStateException("A replay is already in progress");
+        }
+        Path path = request.getPath() != null && !request.getPath().isBlank()
+                ? Paths.get(request.getPath()) : capture.getDir();
+        List<Path> files = CaptureReader.segments(path);
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No capture segments in " + path);
+        }
+        current = new Run(request, files);
+        current.thread.start();
+        log.info("Replay started: {} segments from {}, speed {}, source {}", files.size(), path,
+                request.getSpeed() > 0 ? request.getSpeed() + "x" : "max",
+                request.getSource() != null ? request.getSource() : "any");
+    }
+
+    public void stop() {
+        Run run = current;
+        if (run != null) run.stopped = true;
+    }
+
+    public Map<String, Object> report() {
+        Run run = current;
+        Map<String, Object> out = new LinkedHashMap<>();
+        if (run == null) {
+            out.put("running", false);
+            return out;
+        }
+        long end = run.isRunning() ? System.nanoTime() : run.endNanos;
+        out.put("running", run.isRunning());
+        out.put("speed", run.request.getSpeed());
+        out.put("segments", run.files.size());
+        out.put("elapsedSeconds", (end - run.startNanos) / 1e9);
+        out.put("framesRead", run.framesRead.get());
+        out.put("skipped", run.skipped.get());
+        out.put("sent", run.sent.get());
+        out.put("completed", run.completed.get());
+        out.put("failed", run.failed.get());
+        out.put("results", run.recorder.report());
+        return out;
+    }
+
+    private final class Run {
+        final ReplayRequest request;
+        final List<Path> files;
+        final LatencyRecorder recorder = new LatencyRecorder();
+        final AtomicLong framesRead = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final Thread thread;
+        volatile boolean stopped;
+        volatile long startNanos = System.nanoTime();
+        volatile long endNanos;
+
+        Run(ReplayRequest request, List<Path> files) {
+            this.request = request;
+            this.files = files;
+            this.thread = new Thread(this::replay, "replay-pacer");
+            this.thread.setDaemon(true);
+        }
+
+        boolean isRunning() {
+            return endNanos == 0;
+        }
+
+        private void replay() {
+            long firstTs = -1;
+            startNanos = System.nanoTime();
+            try (CaptureReader reader = new CaptureReader(files)) {
+                CaptureReader.Frame f;
+                while (!stopped && (f = reader.next()) != null) {
+                    framesRead.incrementAndGet();
+                    ISOMsg m = toRequest(f);
+                    if (m == null) {
+                        skipped.incrementAndGet();
+                        continue;
+                    }
+                    if (firstTs < 0) firstTs = f.epochNanos;
+                    long due = System.nanoTime();
+                    if (request.getSpeed() > 0) {
+                        due = startNanos + (long) ((f.epochNanos - firstTs) / request.getSpeed());
+                        long now;
+                        while ((now = System.nanoTime()) < due) {
+                            LockSupport.parkNanos(due - now);
+                            if (stopped) return;
+                        }
+                    }
+                    if (request.isFixup()) fixup(m);
+                    send(m, due);
+                    if (request.getLimit() > 0 && sent.get() >= request.getLimit()) break;
+                }
+            } catch (Exception e) {
+                log.warn("Replay aborted: {}", e.getMessage());
+            } finally {
+                endNanos = System.nanoTime();
+                log.info("Replay finished: {} frames read, {} sent, {} completed, {} failed",
+                        framesRead.get(), sent.get(), completed.get(), failed.get());
+            }
+        }
+
+        private ISOMsg toRequest(CaptureReader.Frame f) {
+            if (request.getSource() != null && request.getSource() != f.source) return null;
+            try {
+                ISOMsg m = new ISOMsg();
+                m.setPackager(packager);
+                m.unpack(f.payload);
+                return m.isRequest() ? m : null;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        private void send(ISOMsg m, long intendedNanos) {
+            String mti = m.getString(0);
+            sent.incrementAndGet();
+            long sentNanos = System.nanoTime();
+            pool.send(m).whenComplete((resp, err) -> {
+                long done = System.nanoTime();
+                if (err == null) completed.incrementAndGet(); else failed.incrementAndGet();
+                recorder.record(mti, outcome(resp, err), intendedNanos, sentNanos, done);
+            });
+        }
+    }
+
+    /**
+     * Fresh STAN and RRN (so replayed requests do not collide with each other or the originals)
+     * and current date/time fields.
+     */
+    private static void fixup(ISOMsg m) {
+        IsoClock.Tick now = IsoClock.now();
+        m.set(11, StanGenerator.nextStan());
+        if (m.hasField(7)) m.set(7, now.transmission);
+        if (m.hasField(12)) m.set(12, now.time);
+        if (m.hasField(13)) m.set(13, now.date);
+        if (m.hasField(37)) m.set(37, RrnGenerator.nextRrn());
+    }
+
+    private static String outcome(ISOMsg resp, Throwable err) {
+        if (err != null) {
+            Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+            if (cause instanceof TimeoutException) return "TIMEOUT";
+            if (cause instanceof RejectedExecutionException) return "REJECTED";
+            return "ERROR";
+        }
+        return resp.hasField(39) ? resp.getString(39) : "NO_RC";
+    }
+}
@@ -0,0 +1,31 @@
+package com.trian.zimswitch.simulator.capture;
+
+/**
+ * Replay parameters. speed 1 = original timing, N = N times faster, 0 = as fast as the pool accepts.
+ */
+public class ReplayRequest {
+    // Capture directory or single segment; defaults to capture.dir
+    private String path;
+    private double speed = 1.0;
+    // Only replay frames captured at this source (CLIENT, JPOS_ACCEPTOR, RAW_ACCEPTOR, NIO_ACCEPTOR)
+    private FrameCapture.Source source;
+    // Give each message a fresh STAN, RRN and date/time fields (7, 12, 13)
+    private boolean fixup = true;
+    // Stop after this many requests (0 = all)
+    private long limit;
+
+    public String getPath() { return path; }
+    public void setPath(String path) { this.path = path; }
+
+    public double getSpeed() { return speed; }
+    public void setSpeed(double speed) { this.speed = speed; }
+
+    public FrameCapture.Source getSource() { return source; }
+    public void setSource(FrameCapture.Source source) { this.source = source; }
+
+    public boolean isFixup() { return fixup; }
+    public void setFixup(boolean fixup) { this.fixup = fixup; }
+
+    public long getLimit() { return limit; }
+    public void setLimit(long limit) { this.limit = limit; }
+}
@@ -0,0 +1,125 @@
+package com.trian.zimswitch.simulator.client;
+
+import com.trian.zimswitch.simulator.metrics.IsoMetrics;
+import org.jpos.iso.ISOMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed set of multiplexed gateway connections, possibly spread over several endpoints.
+ * Each request goes to the connected member with the fewest outstanding transactions;
+ * members that drop are reconnected in the background.
+ */
+public class IsoChannelPool implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(IsoChannelPool.class);
+
+    private final List<MultiplexedIsoClient> members;
+    private final long reconnectIntervalMs;
+    private final IsoMetrics metrics;
+    // Rotating start index so ties are spread instead of always hitting member 0
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final ScheduledExecutorService reconnector = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "iso-pool-reconnect");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public IsoChannelPool(List<MultiplexedIsoClient> members, long reconnectIntervalMs, IsoMetrics metrics) {
+        if (members.isEmpty()) throw new IllegalArgumentException("Channel pool needs at least one member");
+        this.members = List.copyOf(members);
+        this.reconnectIntervalMs = reconnectIntervalMs;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Connects every member once and starts the background reconnect task.
+     */
+    public void start() {
+        reconnectDead();
+        reconnector.scheduleWithFixedDelay(this::reconnectDead, reconnectIntervalMs, reconnectIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public CompletableFuture<ISOMsg> send(ISOMsg request) {
+        long start = System.nanoTime();
+        CompletableFuture<ISOMsg> f = select().send(request);
+        f.whenComplete((resp, err) -> metrics.clientCompleted(request, resp, err, System.nanoTime() - start));
+        return f;
+    }
+
+    /**
+     * Least-outstanding selection over connected members. Falls back to the first member
+     * (which connects on demand) when nothing is up yet.
+     */
+    MultiplexedIsoClient select() {
+        int n = members.size();
+        int start = Math.floorMod(cursor.getAndIncrement(), n);
+        MultiplexedIsoClient best = null;
+        int bestInFlight = Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            MultiplexedIsoClient c = members.get((start + i) % n);
+            if (!c.isConnected()) continue;
+            int inFlight = c.getInFlight();
+            if (inFlight < bestInFlight) {
+                best = c;
+                bestInFlight = inFlight;
+            }
+        }
+        return best != null ? best : members.get(start);
+    }
+
+    private void reconnectDead() {
+        for (MultiplexedIsoClient c : members) {
+            if (c.isConnected()) continue;
+            try {
+                c.connect();
+            } catch (Exception e) {
+                log.debug("{}: reconnect to {} failed: {}", c.getName(), c.getEndpoint(), e.getMessage());
+            }
+        }
+    }
+
+    public List<MultiplexedIsoClient> getMembers() {
+        return members;
+    }
+
+    public int getInFlight() {
+        int total = 0;
+        for (MultiplexedIsoClient c : members) total += c.getInFlight();
+        return total;
+    }
+
+    public List<Map<String, Object>> stats() {
+        List<Map<String, Object>> out = new ArrayList<>(members.size());
+        for (MultiplexedIsoClient c : members) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("name", c.getName());
+            m.put("endpoint", c.getEndpoint());
+            m.put("connected", c.isConnected());
+            m.put("inFlight", c.getInFlight());
+            m.put("maxInFlight", c.getMaxInFlight());
+            m.put("sent", c.getSent());
+            m.put("completed", c.getCompleted());
+            m.put("failed", c.getFailed());
+            m.put("unmatched", c.getUnmatched());
+            m.put("connects", c.getConnects());
+            out.add(m);
+        }
+        return out;
+    }
+
+    @Override
+    public void close() {
+        reconnector.shutdownNow();
+        members.forEach(MultiplexedIsoClient::close);
+    }
+}
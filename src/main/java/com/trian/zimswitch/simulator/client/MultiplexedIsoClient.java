@@ -0,0 +1,234 @@
+package com.trian.zimswitch.simulator.client;
+
+import com.trian.zimswitch.simulator.capture.CapturingNACChannel;
+import org.jpos.iso.ISOChannel;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipelined ISO8583 client over a single channel.
+ * Requests are written as soon as a slot in the in-flight window is free; a dedicated
+ * reader thread drains the channel and completes the pending future whose
+ * correlation key (STAN 11, RRN 37, terminal 41) matches the response.
+ */
+public class MultiplexedIsoClient implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(MultiplexedIsoClient.class);
+
+    private final String name;
+    private final String endpoint;
+    private final ISOChannel channel;
+    private final int maxInFlight;
+    private final long requestTimeoutMs;
+    private final Semaphore window;
+    private final ConcurrentHashMap<String, CompletableFuture<ISOMsg>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong unmatched = new AtomicLong();
+    private final AtomicLong connects = new AtomicLong();
+
+    // Last frame read, for idle detection: requests sent into a dead link must not look like activity
+    private volatile long lastActivityNanos = System.nanoTime();
+    private volatile boolean connected;
+    private volatile boolean closed;
+    // Bumped on every connect so a reader left over from a previous connection never tears down the new one
+    private volatile int generation;
+
+    public MultiplexedIsoClient(String name, String endpoint, ISOChannel channel, int maxInFlight, long requestTimeoutMs) {
+        this.name = name;
+        this.endpoint = endpoint;
+        this.channel = channel;
+        this.maxInFlight = maxInFlight;
+        this.requestTimeoutMs = requestTimeoutMs;
+        this.window = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Sends the request without waiting for the response. The returned future completes with the
+     * matching response, or exceptionally on timeout or connection loss. Requests that were never
+     * written (window full, duplicate key, connect or write failure) fail with {@link NotSentException}.
+     */
+    public CompletableFuture<ISOMsg> send(ISOMsg request) {
+        if (!window.tryAcquire()) {
+            return CompletableFuture.failedFuture(
+                    new NotSentException("In-flight window full (" + maxInFlight + ") on " + name));
+        }
+        String key = correlationKey(request);
+        CompletableFuture<ISOMsg> future = new CompletableFuture<>();
+        if (pending.putIfAbsent(key, future) != null) {
+            window.release();
+            return CompletableFuture.failedFuture(
+                    new NotSentException("Duplicate in-flight correlation key " + key + " on " + name));
+        }
+        // Whoever completes the future (reader, timeout or failure) frees the slot exactly once
+        future.whenComplete((r, e) -> {
+            if (pending.remove(key, future)) window.release();
+            if (e == null) completed.incrementAndGet(); else failed.incrementAndGet();
+        });
+        future.orTimeout(requestTimeoutMs, TimeUnit.MILLISECONDS);
+        try {
+            ensureConnected();
+        } catch (IOException e) {
+            future.completeExceptionally(new NotSentException("Connect failed on " + name + ": " + e.getMessage(), e));
+            return future;
+        }
+        try {
+            channel.send(request);
+            sent.incrementAndGet();
+        } catch (IOException e) {
+            future.completeExceptionally(new NotSentException("Send failed on " + name + ": " + e.getMessage(), e));
+            connectionLost(generation, e);
+        } catch (Exception e) {
+            future.completeExceptionally(new NotSentException("Send failed on " + name + ": " + e.getMessage(), e));
+        }
+        return future;
+    }
+
+    public synchronized void connect() throws IOException {
+        if (closed) throw new IOException(name + " is closed");
+        if (connected) return;
+        if (!channel.isConnected()) {
+            log.info("{}: connecting to {} ...", name, endpoint);
+            channel.connect();
+        }
+        connected = true;
+        connects.incrementAndGet();
+        int gen = ++generation;
+        Thread reader = new Thread(() -> readLoop(gen), name + "-reader");
+        reader.setDaemon(true);
+        reader.start();
+        log.info("{}: connected", name);
+    }
+
+    /**
+     * Drops the connection (failing its in-flight requests) and connects again.
+     */
+    public synchronized void reconnect(String reason) throws IOException {
+        connectionLost(generation, new IOException(reason));
+        connect();
+    }
+
+    private void ensureConnected() throws IOException {
+        if (!connected) connect();
+    }
+
+    private void readLoop(int gen) {
+        while (connected && gen == generation) {
+            ISOMsg response;
+            long framesBefore = framesRead();
+            try {
+                response = channel.receive();
+            } catch (ISOException e) {
+                if (framesRead() == framesBefore) {
+                    // Rejected before the frame was read (e.g. bad length): the stream is out of step
+                    connectionLost(gen, e);
+                    return;
+                }
+                // The frame was read in full, so the stream is still in step: drop just this one
+                lastActivityNanos = System.nanoTime();
+                unmatched.incrementAndGet();
+                log.warn("{}: dropping unparseable response: {}", name, e.getMessage());
+                continue;
+            } catch (IOException e) {
+                connectionLost(gen, e);
+                return;
+            }
+            lastActivityNanos = System.nanoTime();
+            CompletableFuture<ISOMsg> future = pending.get(correlationKey(response));
+            if (future != null) {
+                future.complete(response);
+            } else {
+                unmatched.incrementAndGet();
+                log.debug("{}: dropping unmatched response {}", name, correlationKey(response));
+            }
+        }
+    }
+
+    /**
+     * Frames the channel has read in full; constant for channels that do not count them, so every
+     * receive error is then treated as fatal.
+     */
+    private long framesRead() {
+        return channel instanceof CapturingNACChannel ? ((CapturingNACChannel) channel).getFramesRead() : 0;
+    }
+
+    private synchronized void connectionLost(int gen, Exception cause) {
+        if (!connected || gen != generation) return;
+        log.warn("{}: connection lost: {}", name, cause.getMessage());
+        connected = false;
+        try {
+            channel.disconnect();
+        } catch (IOException ignore) { }
+        IOException lost = new IOException("Connection lost on " + name + ": " + cause.getMessage(), cause);
+        pending.values().forEach(f -> f.completeExceptionally(lost));
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        connectionLost(generation, new IOException("closed"));
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public long getIdleNanos() {
+        return System.nanoTime() - lastActivityNanos;
+    }
+
+    public int getInFlight() {
+        return maxInFlight - window.availablePermits();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getUnmatched() {
+        return unmatched.get();
+    }
+
+    public long getConnects() {
+        return connects.get();
+    }
+
+    /**
+     * Key used to pair a response with its request: STAN, RRN and terminal ID as echoed by the peer.
+     */
+    static String correlationKey(ISOMsg m) {
+        String f11 = m.hasField(11) ? m.getString(11) : "";
+        String f37 = m.hasField(37) ? m.getString(37) : "";
+        String f41 = m.hasField(41) ? m.getString(41) : "";
+        return f11 + '|' + f37 + '|' + f41;
+    }
+}
@@ -0,0 +1,17 @@
+package com.trian.zimswitch.simulator.client;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The request was refused before any of it was written (window full, duplicate correlation key,
+ * connect or write failure), so the switch never saw it and it must not be reversed.
+ */
+public class NotSentException extends RejectedExecutionException {
+    public NotSentException(String message) {
+        super(message);
+    }
+
+    public NotSentException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,10 +1,17 @@
 package com.trian.zimswitch.simulator.config;
 
+import com.trian.zimswitch.simulator.client.IsoChannelPool;
+import com.trian.zimswitch.simulator.client.MultiplexedIsoClient;
+import com.trian.zimswitch.simulator.capture.CapturingNACChannel;
+import com.trian.zimswitch.simulator.capture.FrameCapture;
+import com.trian.zimswitch.simulator.iso.FieldRedactor;
+import com.trian.zimswitch.simulator.iso.IsoPackagerFactory;
+import com.trian.zimswitch.simulator.iso.RedactingLogListener;
+import com.trian.zimswitch.simulator.metrics.IsoMetrics;
 import org.jpos.iso.ISOChannel;
 import org.jpos.iso.ISOPackager;
 import org.jpos.iso.ISOUtil;
 import org.jpos.iso.channel.NACChannel;
-import org.jpos.iso.packager.GenericPackager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.jpos.util.SimpleLogListener;
@@ -15,7 +22,8 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.event.EventListener;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 
-import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 public class IsoChannelConfig {
@@ -34,49 +42,91 @@ public class IsoChannelConfig {
     @Value("${gateway.header:42}")
     private String headerHex;
 
+    // generic: jPOS GenericPackager; compiled: CompiledIsoPackager (same wire format, fewer allocations)
+    @Value("${iso.packager.codec:generic}")
+    private String packagerCodec;
+
+    // remote: DTD fetched from the switch host; classpath: bundled DTD; descriptor: build-time binary descriptor
+    @Value("${iso.packager.source:remote}")
+    private String packagerSource;
+
+    @Value("${gateway.async.enabled:false}")
+    private boolean asyncEnabled;
+
+    @Value("${gateway.async.max-in-flight:64}")
+    private int maxInFlight;
+
+    @Value("${gateway.async.request-timeout:${gateway.timeout:5000}}")
+    private long requestTimeoutMs;
+
+    // Number of multiplexed connections, spread round-robin over the endpoints
+    @Value("${gateway.pool.size:1}")
+    private int poolSize;
+
+    // Comma separated host:port list; defaults to gateway.host:gateway.port
+    @Value("${gateway.pool.endpoints:}")
+    private String poolEndpoints;
+
+    @Value("${gateway.pool.reconnect-interval:2000}")
+    private long reconnectIntervalMs;
+
+    // Attach jPOS SimpleLogListener(System.out) to channels and packager (every message, synchronously, redacted)
+    @Value("${traffic.jpos-dump:false}")
+    private boolean jposDump;
+
     @Bean
     public ISOPackager isoPackager() throws Exception {
-        // Always prefer the custom packager and normalize its DOCTYPE to the provided URL
-        ClassLoader cl = getClass().getClassLoader();
-        InputStream raw = cl.getResourceAsStream("packager/isoswitch.xml");
-        if (raw == null) {
-            throw new IllegalStateException("Packager resource not found on classpath: packager/isoswitch.xml");
+        return IsoPackagerFactory.create(packagerCodec, packagerSource);
+    }
+
+    @Bean
+    public ISOChannel isoChannel(ISOPackager packager, FrameCapture capture, FieldRedactor redactor) throws Exception {
+        NACChannel channel = newChannel(packager, capture, redactor, "zimswitch-nac", host, port);
+        channel.setTimeout(timeoutMs);
+        return channel;
+    }
+
+    @Bean(destroyMethod = "close")
+    public IsoChannelPool isoChannelPool(ISOPackager packager, IsoMetrics metrics, FrameCapture capture,
+                                         FieldRedactor redactor) throws Exception {
+        List<String> endpoints = new ArrayList<>();
+        for (String ep : poolEndpoints.split(",")) {
+            if (!ep.isBlank()) endpoints.add(ep.trim());
         }
-        String xml = new String(raw.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
-        // Force DOCTYPE to requested URL
-        String dtd = "http://45.94.58.51/genericpackager.dtd";
-        if (xml.contains("<!DOCTYPE isopackager")) {
-            xml = xml.replaceAll("<!DOCTYPE\\s+isopackager\\s+SYSTEM\\s+\"[^\"]*\">", "<!DOCTYPE isopackager SYSTEM \"" + dtd + "\">");
-        } else {
-            // Insert DOCTYPE after XML declaration if missing
-            int idx = xml.indexOf('\n');
-            if (idx > -1 && xml.startsWith("<?xml")) {
-                xml = xml.substring(0, idx + 1) + "<!DOCTYPE isopackager SYSTEM \"" + dtd + "\">\n" + xml.substring(idx + 1);
-            } else {
-                xml = "<!DOCTYPE isopackager SYSTEM \"" + dtd + "\">\n" + xml;
-            }
+        if (endpoints.isEmpty()) endpoints.add(host + ":" + port);
+
+        List<MultiplexedIsoClient> members = new ArrayList<>(poolSize);
+        for (int i = 0; i < Math.max(1, poolSize); i++) {
+            String ep = endpoints.get(i % endpoints.size());
+            int idx = ep.lastIndexOf(':');
+            String name = "zimswitch-mux-" + i;
+            // Dedicated connection; no read timeout since the reader idles between responses and
+            // per-request timeouts are enforced on the pending futures instead
+            NACChannel channel = newChannel(packager, capture, redactor, name, ep.substring(0, idx), Integer.parseInt(ep.substring(idx + 1)));
+            channel.setTimeout(0);
+            members.add(new MultiplexedIsoClient(name, ep, channel, maxInFlight, requestTimeoutMs));
         }
-        log.info("Loading ISO packager from classpath resource 'packager/isoswitch.xml' with DTD {}", dtd);
-        java.io.ByteArrayInputStream is = new java.io.ByteArrayInputStream(xml.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-        return new GenericPackager(is);
+        IsoChannelPool pool = new IsoChannelPool(members, reconnectIntervalMs, metrics);
+        metrics.bindPool(pool);
+        return pool;
     }
 
-    @Bean
-    public ISOChannel isoChannel(ISOPackager packager) throws Exception {
+    private NACChannel newChannel(ISOPackager packager, FrameCapture capture, FieldRedactor redactor, String realm, String host, int port) {
         // Build client NAC channel with configurable TPDU/header (hex string)
         NACChannel channel;
         if (headerHex == null || headerHex.isBlank() || headerHex.equalsIgnoreCase("none") || headerHex.equals("-")) {
-            channel = new NACChannel(host,port,packager, ISOUtil.hex2byte("00"));
+            channel = new CapturingNACChannel(host, port, packager, ISOUtil.hex2byte("00"), capture, FrameCapture.Source.CLIENT);
         } else {
             byte[] header = org.jpos.iso.ISOUtil.hex2byte(headerHex);
-            channel = new NACChannel(host, port, packager, header);
+            channel = new CapturingNACChannel(host, port, packager, header, capture, FrameCapture.Source.CLIENT);
         }
-        channel.setTimeout(timeoutMs);
 
-        // Enable jPOS ISO send/receive logging
+        // Per-message traffic goes to TrafficLog; the synchronous jPOS stdout dump is opt-in for debugging
+        if (!jposDump) return channel;
         org.jpos.util.Logger jposLogger = new org.jpos.util.Logger();
+        jposLogger.addListener(new RedactingLogListener(redactor));
         jposLogger.addListener(new SimpleLogListener(System.out));
-        channel.setLogger(jposLogger, "zimswitch-nac");
+        channel.setLogger(jposLogger, realm);
         if (packager instanceof LogSource) {
             ((LogSource) packager).setLogger(jposLogger, "zimswitch-packager");
         }
@@ -91,8 +141,13 @@ public class IsoChannelConfig {
     @EventListener(ApplicationReadyEvent.class)
     public void onReady(ApplicationReadyEvent e) {
         // Try initial connect once application starts
-        ISOChannel channel = e.getApplicationContext().getBean(ISOChannel.class);
         try {
+            if (asyncEnabled) {
+                log.info("Starting gateway channel pool ({} connections, max in-flight {} each) ...", poolSize, maxInFlight);
+                e.getApplicationContext().getBean(IsoChannelPool.class).start();
+                return;
+            }
+            ISOChannel channel = e.getApplicationContext().getBean(ISOChannel.class);
             synchronized (channel) {
                 if (!channel.isConnected()) {
                     log.info("Connecting ISOChannel to {}:{} ...", host, port);
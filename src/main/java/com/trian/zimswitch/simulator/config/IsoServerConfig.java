@@ -1,10 +1,17 @@
 package com.trian.zimswitch.simulator.config;
 
+import com.trian.zimswitch.simulator.capture.CapturingNACChannel;
+import com.trian.zimswitch.simulator.capture.FrameCapture;
+import com.trian.zimswitch.simulator.iso.FieldRedactor;
+import com.trian.zimswitch.simulator.iso.RedactingLogListener;
+import com.trian.zimswitch.simulator.server.AcceptorStats;
 import com.trian.zimswitch.simulator.server.PosIsoRequestListener;
+import com.trian.zimswitch.simulator.server.SessionStats;
+import com.trian.zimswitch.simulator.server.SessionThreadPool;
+import com.trian.zimswitch.simulator.util.SessionThreads;
 import org.jpos.iso.ISOPackager;
 import org.jpos.iso.ISOServer;
 import org.jpos.iso.ServerChannel;
-import org.jpos.iso.channel.NACChannel;
 import org.jpos.iso.ISOUtil;
 import org.jpos.util.Logger;
 import org.jpos.util.SimpleLogListener;
@@ -30,24 +37,41 @@ public class IsoServerConfig {
     @Value("${acceptor.header:42}")
     private String headerHex;
 
+    // platform: bounded platform-thread sessions (max-sessions defaults to the old pool size of 50)
+    // virtual: one virtual thread per session (Java 21+), bounded by max-sessions
+    @Value("${acceptor.threads:platform}")
+    private String threadMode;
+
+    @Value("${acceptor.jpos.max-sessions:#{null}}")
+    private Integer maxSessions;
+
     @Bean
-    public ISOServer isoServer(ISOPackager packager, PosIsoRequestListener listener) throws Exception {
+    public ISOServer isoServer(ISOPackager packager, PosIsoRequestListener listener, AcceptorStats acceptorStats,
+                               FrameCapture capture, FieldRedactor redactor) throws Exception {
         System.out.println("Listening on port " + listenPort);
         // Build server-side NAC channel with TPDU header
         byte[] header = ISOUtil.hex2byte(headerHex);
-        ServerChannel srvChannel = new NACChannel(packager, header);
+        ServerChannel srvChannel = new CapturingNACChannel(packager, header, capture, FrameCapture.Source.JPOS_ACCEPTOR);
 
-        // jPOS logger to stdout for ISO traffic
+        // jPOS logger to stdout for ISO traffic, sensitive fields masked first
         Logger jposLogger = new Logger();
+        jposLogger.addListener(new RedactingLogListener(redactor));
         jposLogger.addListener(new SimpleLogListener(System.out));
         // Enable ISO in/out dumps at channel level
        // srvChannel.setLogger(jposLogger, "zimswitch-acceptor-nac");
 
-        ISOServer server = new ISOServer(listenPort, srvChannel, new ThreadPool(5, 50));
+        boolean virtual = SessionThreads.isVirtual(threadMode);
+        int sessions = maxSessions != null ? maxSessions : (virtual ? 10_000 : 50);
+        SessionStats stats = acceptorStats.get("jpos");
+        stats.configure(virtual ? "virtual" : "platform", sessions);
+        ThreadPool pool = new SessionThreadPool(SessionThreads.newExecutor(threadMode, "iso-session-"), sessions, stats);
+
+        ISOServer server = new ISOServer(listenPort, srvChannel, pool);
         server.setLogger(jposLogger, "zimswitch-acceptor");
         server.addISORequestListener(listener);
 
-        log.info("Configured ISO8583 acceptor on port {} with header {}", listenPort, headerHex);
+        log.info("Configured ISO8583 acceptor on port {} with header {} ({} threads, max {} sessions)",
+                listenPort, headerHex, virtual ? "virtual" : "platform", sessions);
         return server;
     }
 
@@ -0,0 +1,72 @@
+package com.trian.zimswitch.simulator.controller;
+
+import com.trian.zimswitch.simulator.server.AcceptorStats;
+import com.trian.zimswitch.simulator.server.AdmissionControl;
+import com.trian.zimswitch.simulator.server.LatencyInjector;
+import com.trian.zimswitch.simulator.server.ResponseRuleEngine;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/zimswitch/acceptor")
+public class AcceptorStatsController {
+
+    private final AcceptorStats acceptorStats;
+    private final ResponseRuleEngine ruleEngine;
+    private final LatencyInjector latency;
+    private final AdmissionControl admission;
+
+    public AcceptorStatsController(AcceptorStats acceptorStats, ResponseRuleEngine ruleEngine, LatencyInjector latency,
+                                   AdmissionControl admission) {
+        this.acceptorStats = acceptorStats;
+        this.ruleEngine = ruleEngine;
+        this.latency = latency;
+        this.admission = admission;
+    }
+
+    /**
+     * Thread mode, active/peak sessions and request latency percentiles per acceptor.
+     * Run the same load with acceptor.threads=platform and =virtual to compare the two.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> stats() {
+        return ResponseEntity.ok(acceptorStats.snapshot());
+    }
+
+    @PostMapping("/stats/reset")
+    public ResponseEntity<?> reset() {
+        acceptorStats.reset();
+        latency.reset();
+        admission.reset();
+        return ResponseEntity.ok(acceptorStats.snapshot());
+    }
+
+    /**
+     * Admission limits, queue depth and shed requests (queue full, rate limit, latency budget) per acceptor.
+     */
+    @GetMapping("/admission")
+    public ResponseEntity<?> admission() {
+        return ResponseEntity.ok(admission.snapshot());
+    }
+
+    /**
+     * Loaded response rules in evaluation order, with hit counts.
+     */
+    @GetMapping("/rules")
+    public ResponseEntity<?> rules() {
+        return ResponseEntity.ok(ruleEngine.rules().stats());
+    }
+
+    @PostMapping("/rules/reload")
+    public ResponseEntity<?> reloadRules() throws Exception {
+        return ResponseEntity.ok(ruleEngine.reload().stats());
+    }
+
+    /**
+     * Configured delay distribution, injected delay percentiles and timer lateness.
+     */
+    @GetMapping("/latency")
+    public ResponseEntity<?> latency() {
+        return ResponseEntity.ok(latency.toMap());
+    }
+}
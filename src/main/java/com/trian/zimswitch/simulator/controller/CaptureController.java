@@ -0,0 +1,64 @@
+package com.trian.zimswitch.simulator.controller;
+
+import com.trian.zimswitch.simulator.capture.FrameCapture;
+import com.trian.zimswitch.simulator.capture.ReplayEngine;
+import com.trian.zimswitch.simulator.capture.ReplayRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/zimswitch/capture")
+public class CaptureController {
+
+    private final FrameCapture capture;
+    private final ReplayEngine replayEngine;
+
+    public CaptureController(FrameCapture capture, ReplayEngine replayEngine) {
+        this.capture = capture;
+        this.replayEngine = replayEngine;
+    }
+
+    @PostMapping("/start")
+    public ResponseEntity<?> start() {
+        capture.start();
+        return ResponseEntity.ok(capture.stats());
+    }
+
+    @PostMapping("/stop")
+    public ResponseEntity<?> stop() {
+        capture.stop();
+        return ResponseEntity.ok(capture.stats());
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<?> stats() {
+        return ResponseEntity.ok(capture.stats());
+    }
+
+    /**
+     * Replays captured requests through the channel pool, e.g. {"speed":10, "source":"CLIENT"}.
+     */
+    @PostMapping("/replay/start")
+    public ResponseEntity<?> replay(@RequestBody(required = false) ReplayRequest request) throws Exception {
+        try {
+            replayEngine.start(request != null ? request : new ReplayRequest());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(replayEngine.report());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        return ResponseEntity.ok(replayEngine.report());
+    }
+
+    @PostMapping("/replay/stop")
+    public ResponseEntity<?> stopReplay() {
+        replayEngine.stop();
+        return ResponseEntity.ok(replayEngine.report());
+    }
+
+    @GetMapping("/replay/report")
+    public ResponseEntity<?> replayReport() {
+        return ResponseEntity.ok(replayEngine.report());
+    }
+}
@@ -0,0 +1,52 @@
+package com.trian.zimswitch.simulator.controller;
+
+import com.trian.zimswitch.simulator.fleet.FleetProfile;
+import com.trian.zimswitch.simulator.fleet.FleetSimulator;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/zimswitch/fleet")
+public class FleetController {
+
+    private final FleetSimulator fleet;
+
+    public FleetController(FleetSimulator fleet) {
+        this.fleet = fleet;
+    }
+
+    /**
+     * Starts a terminal fleet run, e.g.
+     * {"terminals":2000, "port":6000, "thinkTimeMs":1000, "rampUpSeconds":20, "durationSeconds":120}.
+     */
+    @PostMapping("/start")
+    public ResponseEntity<?> start(@RequestBody(required = false) FleetProfile profile) {
+        try {
+            fleet.start(profile != null ? profile : new FleetProfile());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(fleet.report(false));
+        } catch (IllegalArgumentException e) {
+            // Bad terminal count, length format, header or message fields
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        return ResponseEntity.ok(fleet.report(false));
+    }
+
+    @PostMapping("/stop")
+    public ResponseEntity<?> stop() {
+        fleet.stop();
+        return ResponseEntity.ok(fleet.report(false));
+    }
+
+    /**
+     * Aggregate throughput, connect times, error rate and latency per MTI/RC;
+     * ?terminals=true adds per-terminal counters.
+     */
+    @GetMapping("/report")
+    public ResponseEntity<?> report(@RequestParam(defaultValue = "false") boolean terminals) {
+        return ResponseEntity.ok(fleet.report(terminals));
+    }
+}
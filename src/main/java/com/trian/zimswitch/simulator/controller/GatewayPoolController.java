@@ -0,0 +1,35 @@
+package com.trian.zimswitch.simulator.controller;
+
+import com.trian.zimswitch.simulator.client.IsoChannelPool;
+import com.trian.zimswitch.simulator.schedule.HeartbeatManager;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/zimswitch/pool")
+public class GatewayPoolController {
+
+    private final IsoChannelPool pool;
+    private final HeartbeatManager heartbeats;
+
+    public GatewayPoolController(IsoChannelPool pool, HeartbeatManager heartbeats) {
+        this.pool = pool;
+        this.heartbeats = heartbeats;
+    }
+
+    /**
+     * Per-connection stats of the gateway channel pool (endpoint, connected, in-flight, counters).
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> stats() {
+        return ResponseEntity.ok(pool.stats());
+    }
+
+    /**
+     * Heartbeat state per gateway connection (echoes sent/answered, missed streak, reconnects).
+     */
+    @GetMapping("/heartbeats")
+    public ResponseEntity<?> heartbeats() {
+        return ResponseEntity.ok(heartbeats.stats());
+    }
+}
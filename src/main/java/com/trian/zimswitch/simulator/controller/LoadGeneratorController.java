@@ -0,0 +1,51 @@
+package com.trian.zimswitch.simulator.controller;
+
+import com.trian.zimswitch.simulator.loadgen.LoadGenerator;
+import com.trian.zimswitch.simulator.loadgen.LoadProfile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/zimswitch/load")
+public class LoadGeneratorController {
+
+    private final LoadGenerator loadGenerator;
+
+    public LoadGeneratorController(LoadGenerator loadGenerator) {
+        this.loadGenerator = loadGenerator;
+    }
+
+    /**
+     * Starts an open-model load run, e.g.
+     * {"targetTps":200, "rampUpSeconds":10, "steadySeconds":60, "mix":{"1200":90, "0800":10}}.
+     */
+    @PostMapping("/start")
+    public ResponseEntity<?> start(@RequestBody(required = false) LoadProfile profile) {
+        try {
+            loadGenerator.start(profile != null ? profile : new LoadProfile());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(loadGenerator.report());
+        } catch (IllegalArgumentException e) {
+            // Non-positive rate, negative phase, empty mix, bad weights or message fields
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        return ResponseEntity.ok(loadGenerator.report());
+    }
+
+    @PostMapping("/stop")
+    public ResponseEntity<?> stop() {
+        loadGenerator.stop();
+        return ResponseEntity.ok(loadGenerator.report());
+    }
+
+    /**
+     * Current or last run: counters plus p50/p99/p99.9/max per MTI and response code.
+     */
+    @GetMapping("/report")
+    public ResponseEntity<?> report() {
+        return ResponseEntity.ok(loadGenerator.report());
+    }
+}
@@ -0,0 +1,24 @@
+package com.trian.zimswitch.simulator.controller;
+
+import com.trian.zimswitch.simulator.reversal.ReversalForwarder;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/zimswitch/reversals")
+public class ReversalController {
+
+    private final ReversalForwarder forwarder;
+
+    public ReversalController(ReversalForwarder forwarder) {
+        this.forwarder = forwarder;
+    }
+
+    /**
+     * Automatic reversal counters (enqueued, sent, repeats, completed, retried, gave up) and journal state.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> stats() {
+        return ResponseEntity.ok(forwarder.stats());
+    }
+}
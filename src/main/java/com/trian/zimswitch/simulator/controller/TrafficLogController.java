@@ -0,0 +1,24 @@
+package com.trian.zimswitch.simulator.controller;
+
+import com.trian.zimswitch.simulator.traffic.TrafficLog;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/zimswitch/traffic")
+public class TrafficLogController {
+
+    private final TrafficLog trafficLog;
+
+    public TrafficLogController(TrafficLog trafficLog) {
+        this.trafficLog = trafficLog;
+    }
+
+    /**
+     * Traffic log mode and offered / sampled-out / dropped / written counts.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> stats() {
+        return ResponseEntity.ok(trafficLog.stats());
+    }
+}
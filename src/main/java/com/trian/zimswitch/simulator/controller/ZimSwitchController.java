@@ -1,19 +1,45 @@
 package com.trian.zimswitch.simulator.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.trian.zimswitch.simulator.service.BatchSender;
 import com.trian.zimswitch.simulator.service.ZimSwitchClientService;
+import org.jpos.iso.ISOMsg;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/zimswitch/send")
 public class ZimSwitchController {
 
     private final ZimSwitchClientService clientService;
+    private final BatchSender batchSender;
+    private final ObjectReader overridesReader;
+    private final AtomicInteger pending = new AtomicInteger();
 
-    public ZimSwitchController(ZimSwitchClientService clientService) {
+    // Requests waiting on the gateway; beyond this the single-message endpoints answer 503
+    @Value("${gateway.rest.max-pending:200}")
+    private int maxPending;
+
+    public ZimSwitchController(ZimSwitchClientService clientService, BatchSender batchSender, ObjectMapper mapper) {
         this.clientService = clientService;
+        this.batchSender = batchSender;
+        this.overridesReader = mapper.readerFor(new TypeReference<Map<String, String>>() {});
     }
 
     /**
@@ -21,8 +47,8 @@ public class ZimSwitchController {
      * Optional JSON body can override fields (e.g. {"2":"<pan>", "4":"000000001000"}).
      */
     @PostMapping("/financial")
-    public ResponseEntity<?> financial(@RequestBody(required = false) Map<String, String> body) throws Exception {
-        return ResponseEntity.ok(clientService.sendFinancial(body));
+    public CompletableFuture<ResponseEntity<?>> financial(@RequestBody(required = false) Map<String, String> body) {
+        return pending(() -> clientService.submitFinancial(body));
     }
 
     /**
@@ -30,8 +56,8 @@ public class ZimSwitchController {
      * Optional JSON body can override fields.
      */
     @PostMapping("/reversal")
-    public ResponseEntity<?> reversal(@RequestBody(required = false) Map<String, String> body) throws Exception {
-        return ResponseEntity.ok(clientService.sendReversal(body));
+    public CompletableFuture<ResponseEntity<?>> reversal(@RequestBody(required = false) Map<String, String> body) {
+        return pending(() -> clientService.submitReversal(body));
     }
 
     /**
@@ -39,7 +65,70 @@ public class ZimSwitchController {
      * You can override via JSON body, e.g. {"mti":"1804", "70":"303"}.
      */
     @PostMapping("/echo")
-    public ResponseEntity<?> echo(@RequestBody(required = false) Map<String, String> body) throws Exception {
-        return ResponseEntity.ok(clientService.sendEcho(body));
+    public CompletableFuture<ResponseEntity<?>> echo(@RequestBody(required = false) Map<String, String> body) {
+        return pending(() -> clientService.submitEcho(body));
+    }
+
+    /**
+     * Runs the send without holding the servlet thread; answers 503 straight away when max-pending
+     * requests are already waiting on the gateway, when the channel pool's in-flight window is full,
+     * or when the request waited longer than gateway.rest.max-wait-ms for the locked channel.
+     */
+    private CompletableFuture<ResponseEntity<?>> pending(Supplier<CompletableFuture<ISOMsg>> send) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            return CompletableFuture.completedFuture(unavailable("Too many pending requests (" + maxPending + ")"));
+        }
+        CompletableFuture<ISOMsg> f;
+        try {
+            f = send.get();
+        } catch (RuntimeException e) {
+            pending.decrementAndGet();
+            throw e;
+        }
+        return f.handle((resp, err) -> {
+            pending.decrementAndGet();
+            if (err == null) return ResponseEntity.ok(resp);
+            Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+            if (cause instanceof RejectedExecutionException) return unavailable(cause.getMessage());
+            // Anything else goes to Spring's usual error handling, as with the blocking handlers
+            throw err instanceof CompletionException ? (CompletionException) err : new CompletionException(err);
+        });
+    }
+
+    private static ResponseEntity<?> unavailable(String error) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").body(Map.of("error", error));
+    }
+
+    /**
+     * Pipelines many transactions of one type (financial, reversal or echo) through the channel pool.
+     * The body is a JSON array or an NDJSON stream of override maps, one transaction each; with
+     * ?count=N the body is a single override map (optional) sent N times.
+     * Responds with NDJSON: one {"index", "ok", "response"|"error"} line per transaction in completion
+     * order, then a {"summary"} line.
+     */
+    @PostMapping("/batch/{type}")
+    public ResponseEntity<?> batch(@PathVariable String type, @RequestParam(required = false) Integer count,
+                                   InputStream body) throws Exception {
+        if (!BatchSender.TYPES.contains(type)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unknown batch type: " + type));
+        }
+        StreamingResponseBody stream;
+        if (count != null) {
+            Map<String, String> template = new HashMap<>();
+            try (MappingIterator<Map<String, String>> in = overridesReader.readValues(body)) {
+                if (in.hasNext()) template = in.next();
+            }
+            Map<String, String> overrides = template;
+            stream = out -> batchSender.send(type, BatchSender.repeat(overrides, count), out);
+        } else {
+            // Array elements or NDJSON lines are parsed as the pipeline window frees up
+            stream = out -> {
+                try (MappingIterator<Map<String, String>> in = overridesReader.readValues(body)) {
+                    batchSender.send(type, in, out);
+                }
+            };
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(stream);
     }
 }
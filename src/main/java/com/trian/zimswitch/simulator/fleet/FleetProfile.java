@@ -0,0 +1,89 @@
+package com.trian.zimswitch.simulator.fleet;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Closed-model terminal fleet: each terminal holds one persistent connection and sends its next
+ * request thinkTimeMs after the previous response.
+ * Example JSON:
+ * {"terminals":2000, "port":6000, "thinkTimeMs":1000, "rampUpSeconds":20, "durationSeconds":120}
+ */
+public class FleetProfile {
+    private int terminals = 100;
+    private String host = "127.0.0.1";
+    private int port = 6000;
+    // Length header: binary (2-byte NAC), ascii (4 digits) or bcd (2 bytes)
+    private String lengthFormat = "binary";
+    // TPDU/header bytes (hex) after the length; the response is expected to carry as many
+    private String header = "00";
+    private String mti = "1200";
+    private long thinkTimeMs = 1000;
+    // Connects are spread evenly over the ramp-up
+    private int rampUpSeconds = 10;
+    private int durationSeconds = 60;
+    private int connectTimeoutMs = 5000;
+    private int readTimeoutMs = 5000;
+    // Terminal i gets TID tidPrefix + i and MID midPrefix + i, zero-padded to 8 and 15 characters
+    private String tidPrefix = "FT";
+    private String midPrefix = "FLEET";
+    // Field overrides applied to every terminal's messages (41/42 are set per terminal)
+    private Map<String, String> overrides = new HashMap<>();
+
+    public int getTerminals() { return terminals; }
+    public void setTerminals(int terminals) { this.terminals = terminals; }
+
+    public String getHost() { return host; }
+    public void setHost(String host) { this.host = host; }
+
+    public int getPort() { return port; }
+    public void setPort(int port) { this.port = port; }
+
+    public String getLengthFormat() { return lengthFormat; }
+    public void setLengthFormat(String lengthFormat) { this.lengthFormat = lengthFormat; }
+
+    public String getHeader() { return header; }
+    public void setHeader(String header) { this.header = header; }
+
+    public String getMti() { return mti; }
+    public void setMti(String mti) { this.mti = mti; }
+
+    public long getThinkTimeMs() { return thinkTimeMs; }
+    public void setThinkTimeMs(long thinkTimeMs) { this.thinkTimeMs = thinkTimeMs; }
+
+    public int getRampUpSeconds() { return rampUpSeconds; }
+    public void setRampUpSeconds(int rampUpSeconds) { this.rampUpSeconds = rampUpSeconds; }
+
+    public int getDurationSeconds() { return durationSeconds; }
+    public void setDurationSeconds(int durationSeconds) { this.durationSeconds = durationSeconds; }
+
+    public int getConnectTimeoutMs() { return connectTimeoutMs; }
+    public void setConnectTimeoutMs(int connectTimeoutMs) { this.connectTimeoutMs = connectTimeoutMs; }
+
+    public int getReadTimeoutMs() { return readTimeoutMs; }
+    public void setReadTimeoutMs(int readTimeoutMs) { this.readTimeoutMs = readTimeoutMs; }
+
+    public String getTidPrefix() { return tidPrefix; }
+    public void setTidPrefix(String tidPrefix) { this.tidPrefix = tidPrefix; }
+
+    public String getMidPrefix() { return midPrefix; }
+    public void setMidPrefix(String midPrefix) { this.midPrefix = midPrefix; }
+
+    public Map<String, String> getOverrides() { return overrides; }
+    public void setOverrides(Map<String, String> overrides) { this.overrides = overrides != null ? overrides : new HashMap<>(); }
+
+    String terminalId(int i) {
+        return id(tidPrefix, i, 8);
+    }
+
+    String merchantId(int i) {
+        return id(midPrefix, i, 15);
+    }
+
+    private static String id(String prefix, int i, int width) {
+        String n = Integer.toString(i);
+        int zeros = width - prefix.length() - n.length();
+        if (zeros < 0) throw new IllegalArgumentException("Prefix " + prefix + " too long for " + width + "-character IDs");
+        return prefix + "0".repeat(zeros) + n;
+    }
+}
@@ -0,0 +1,340 @@
+package com.trian.zimswitch.simulator.fleet;
+
+import com.trian.zimswitch.simulator.framing.BufferPool;
+import com.trian.zimswitch.simulator.framing.FrameCodec;
+import com.trian.zimswitch.simulator.framing.LengthFormat;
+import com.trian.zimswitch.simulator.iso.IsoMessageBuilder;
+import com.trian.zimswitch.simulator.iso.MessageTemplate;
+import com.trian.zimswitch.simulator.loadgen.LatencyRecorder;
+import com.trian.zimswitch.simulator.util.IsoClock;
+import com.trian.zimswitch.simulator.util.SessionThreads;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOPackager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Virtual POS terminal fleet for connection-scaling tests against the raw/NIO socket acceptor or
+ * the jPOS ISOServer. Every terminal has its own TID/MID, STAN sequence and persistent connection
+ * ({@link FrameCodec} framing, pooled read buffers) and runs on its own thread, virtual when available, sending the
+ * next request a think-time after each response.
+ */
+@Component
+public class FleetSimulator {
+    private static final Logger log = LoggerFactory.getLogger(FleetSimulator.class);
+
+    private final ISOPackager packager;
+    private final IsoMessageBuilder builder;
+
+    // virtual (Java 21+, falls back to platform) or platform; platform means one OS thread per terminal
+    @Value("${fleet.threads:virtual}")
+    private String threadMode;
+
+    private volatile Run current;
+
+    public FleetSimulator(ISOPackager packager, IsoMessageBuilder builder) {
+        this.packager = packager;
+        this.builder = builder;
+    }
+
+    public synchronized void start(FleetProfile profile) {
+        if (current != null && current.isRunning()) {
+            throw new IllegalStateException("A fleet run is already in progress");
+        }
+        if (profile.getTerminals() <= 0) {
+            throw new IllegalArgumentException("Fleet needs at least one terminal");
+        }
+        current = new Run(profile);
+        current.start();
+        log.info("Fleet run started: {} terminals against {}:{}, think time {} ms, ramp-up {}s, duration {}s ({} threads)",
+                profile.getTerminals(), profile.getHost(), profile.getPort(), profile.getThinkTimeMs(),
+                profile.getRampUpSeconds(), profile.getDurationSeconds(), current.threads);
+    }
+
+    public void stop() {
+        Run run = current;
+        if (run != null) run.stop();
+    }
+
+    /**
+     * @param detail include one entry per terminal (large for big fleets)
+     */
+    public Map<String, Object> report(boolean detail) {
+        Run run = current;
+        Map<String, Object> out = new LinkedHashMap<>();
+        if (run == null) {
+            out.put("running", false);
+            return out;
+        }
+        long elapsed = (run.isRunning() ? System.nanoTime() : run.endNanos) - run.startNanos;
+        double seconds = elapsed / 1e9;
+        long sent = 0, ok = 0, declined = 0, errors = 0, connected = 0;
+        for (Terminal t : run.terminals) {
+            sent += t.sent;
+            ok += t.ok;
+            declined += t.declined;
+            errors += t.errors;
+            if (t.socket != null) connected++;
+        }
+        out.put("running", run.isRunning());
+        out.put("elapsedSeconds", seconds);
+        out.put("threads", run.threads);
+        out.put("terminals", run.terminals.length);
+        out.put("connected", connected);
+        out.put("sent", sent);
+        out.put("approved", ok);
+        out.put("declined", declined);
+        out.put("errors", errors);
+        out.put("tps", seconds > 0 ? (ok + declined) / seconds : 0.0);
+        out.put("errorRate", sent > 0 ? (double) errors / sent : 0.0);
+        Map<String, Object> connects = new LinkedHashMap<>();
+        connects.put("count", run.connectTimes.getTotalCount());
+        connects.put("failed", run.connectFailures.get());
+        connects.put("p50Ms", run.connectTimes.getValueAtPercentile(50.0) / 1000.0);
+        connects.put("p99Ms", run.connectTimes.getValueAtPercentile(99.0) / 1000.0);
+        connects.put("maxMs", run.connectTimes.getMaxValue() / 1000.0);
+        out.put("connects", connects);
+        out.put("results", run.recorder.report());
+        if (detail) {
+            List<Map<String, Object>> list = new ArrayList<>(run.terminals.length);
+            for (Terminal t : run.terminals) list.add(t.report(seconds));
+            out.put("terminalDetail", list);
+        } else {
+            // Worst terminals only, so a handful of failing TIDs stand out in a big fleet
+            out.put("topErrorTerminals", Arrays.stream(run.terminals)
+                    .filter(t -> t.errors > 0)
+                    .sorted(Comparator.comparingLong((Terminal t) -> t.errors).reversed())
+                    .limit(10)
+                    .map(t -> t.report(seconds))
+                    .toList());
+        }
+        return out;
+    }
+
+    private final class Run {
+        final FleetProfile profile;
+        final Terminal[] terminals;
+        final FrameCodec codec;
+        final String threads;
+        final LatencyRecorder recorder = new LatencyRecorder();
+        // Connect times in microseconds
+        final Histogram connectTimes = new ConcurrentHistogram(3);
+        final AtomicLong connectFailures = new AtomicLong();
+        final CountDownLatch finished;
+        final ExecutorService executor;
+        volatile boolean stopped;
+        volatile long startNanos;
+        volatile long endNanos;
+
+        Run(FleetProfile profile) {
+            this.profile = profile;
+            byte[] header = FrameCodec.header(profile.getHeader());
+            // Responses carry a header as long as the request's; one pooled buffer per terminal at most
+            this.codec = new FrameCodec(LengthFormat.of(profile.getLengthFormat()), header, header.length,
+                    new BufferPool(4096, profile.getTerminals(), false));
+            this.threads = SessionThreads.isVirtual(threadMode) ? "virtual" : "platform";
+            this.terminals = new Terminal[profile.getTerminals()];
+            for (int i = 0; i < terminals.length; i++) {
+                terminals[i] = new Terminal(this, i + 1);
+            }
+            this.finished = new CountDownLatch(terminals.length);
+            this.executor = SessionThreads.newExecutor(threadMode, "fleet-terminal-");
+        }
+
+        void start() {
+            startNanos = System.nanoTime();
+            for (Terminal t : terminals) executor.execute(t);
+            Thread supervisor = new Thread(() -> {
+                try {
+                    finished.await();
+                } catch (InterruptedException ignore) {
+                    Thread.currentThread().interrupt();
+                }
+                endNanos = System.nanoTime();
+                executor.shutdown();
+                log.info("Fleet run finished after {} s", (endNanos - startNanos) / 1_000_000_000L);
+            }, "fleet-supervisor");
+            supervisor.setDaemon(true);
+            supervisor.start();
+        }
+
+        void stop() {
+            stopped = true;
+            // Unblock terminals waiting on a response, ramping up or thinking
+            for (Terminal t : terminals) {
+                t.close();
+                LockSupport.unpark(t.thread);
+            }
+        }
+
+        boolean isRunning() {
+            return endNanos == 0;
+        }
+    }
+
+    /**
+     * One terminal; all counters are written by its own thread only.
+     */
+    private final class Terminal implements Runnable {
+        final Run run;
+        final int index;
+        final String tid;
+        final MessageTemplate template;
+        final Map<String, String> stan = new HashMap<>(2);
+        int stanSeq;
+        volatile Socket socket;
+        // Set once the terminal runs, so stop() can cut its pause short
+        volatile Thread thread;
+        InputStream in;
+        OutputStream out;
+        volatile long connects, connectMicros = -1, sent, ok, declined, errors;
+        volatile String lastError;
+
+        Terminal(Run run, int index) {
+            this.run = run;
+            this.index = index;
+            this.tid = run.profile.terminalId(index);
+            Map<String, String> o = new HashMap<>(run.profile.getOverrides());
+            o.put("41", tid);
+            o.put("42", run.profile.merchantId(index));
+            this.template = builder.template(run.profile.getMti(), o);
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            FleetProfile p = run.profile;
+            long deadline = run.startNanos + p.getDurationSeconds() * 1_000_000_000L;
+            long rampNanos = p.getRampUpSeconds() * 1_000_000_000L;
+            try {
+                pause(run.startNanos + rampNanos * (index - 1) / run.terminals.length, deadline);
+                while (!run.stopped && System.nanoTime() < deadline) {
+                    if (socket == null && !connect()) {
+                        pause(System.nanoTime() + 1_000_000_000L, deadline);
+                        continue;
+                    }
+                    try {
+                        exchange();
+                    } catch (Exception e) {
+                        // Sockets closed by stop() are not terminal errors
+                        if (run.stopped) break;
+                        errors++;
+                        lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+                        close();
+                        continue;
+                    }
+                    pause(System.nanoTime() + p.getThinkTimeMs() * 1_000_000L, deadline);
+                }
+            } finally {
+                close();
+                run.finished.countDown();
+            }
+        }
+
+        private boolean connect() {
+            long start = System.nanoTime();
+            Socket s = new Socket();
+            try {
+                s.setTcpNoDelay(true);
+                s.setSoTimeout(run.profile.getReadTimeoutMs());
+                s.connect(new InetSocketAddress(run.profile.getHost(), run.profile.getPort()), run.profile.getConnectTimeoutMs());
+                in = new BufferedInputStream(s.getInputStream());
+                out = new BufferedOutputStream(s.getOutputStream());
+            } catch (IOException e) {
+                try { s.close(); } catch (IOException ignore) {}
+                run.connectFailures.incrementAndGet();
+                errors++;
+                lastError = "connect: " + e.getMessage();
+                return false;
+            }
+            connectMicros = (System.nanoTime() - start) / 1000;
+            run.connectTimes.recordValue(connectMicros);
+            connects++;
+            socket = s;
+            return true;
+        }
+
+        private void exchange() throws Exception {
+            stanSeq = stanSeq >= 999_999 ? 1 : stanSeq + 1;
+            String reqStan = IsoClock.pad6(stanSeq);
+            stan.put("11", reqStan);
+            ISOMsg req = template.newMessage(stan);
+            byte[] body = packager.pack(req);
+            long sentNanos = System.nanoTime();
+            run.codec.write(out, body);
+            out.flush();
+            sent++;
+            ByteBuffer frame = run.codec.read(in);
+            if (frame == null) throw new EOFException("Connection closed by acceptor");
+            long done = System.nanoTime();
+            ISOMsg resp;
+            try {
+                resp = run.codec.unpack(packager, frame);
+            } finally {
+                run.codec.release(frame);
+            }
+            if (!reqStan.equals(resp.getString(11))) {
+                throw new IllegalStateException("Response STAN " + resp.getString(11) + " does not match " + reqStan);
+            }
+            String rc = resp.hasField(39) ? resp.getString(39) : "NO_RC";
+            if ("00".equals(rc)) ok++; else declined++;
+            run.recorder.record(req.getMTI(), rc, sentNanos, sentNanos, done);
+        }
+
+        private void pause(long untilNanos, long deadline) {
+            long end = Math.min(untilNanos, deadline);
+            long now;
+            while (!run.stopped && (now = System.nanoTime()) < end) {
+                LockSupport.parkNanos(end - now);
+            }
+        }
+
+        void close() {
+            Socket s = socket;
+            socket = null;
+            if (s != null) {
+                try { s.close(); } catch (IOException ignore) {}
+            }
+        }
+
+        Map<String, Object> report(double seconds) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("tid", tid);
+            m.put("connected", socket != null);
+            m.put("connects", connects);
+            m.put("lastConnectMs", connectMicros < 0 ? null : connectMicros / 1000.0);
+            m.put("sent", sent);
+            m.put("approved", ok);
+            m.put("declined", declined);
+            m.put("errors", errors);
+            m.put("tps", seconds > 0 ? (ok + declined) / seconds : 0.0);
+            if (lastError != null) m.put("lastError", lastError);
+            return m;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.trian.zimswitch.simulator.framing;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Free list of equally sized byte buffers, heap or direct. Requests up to bufferSize get a pooled
+ * buffer; larger ones get a one-off allocation that is not pooled on release. At most maxPooled
+ * buffers are kept, so a burst does not pin memory for good.
+ */
+public final class BufferPool {
+    private final int bufferSize;
+    private final int maxPooled;
+    private final boolean direct;
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong allocated = new AtomicLong();
+
+    public BufferPool(int bufferSize, int maxPooled, boolean direct) {
+        this.bufferSize = Math.max(64, bufferSize);
+        this.maxPooled = Math.max(0, maxPooled);
+        this.direct = direct;
+    }
+
+    public int bufferSize() {
+        return bufferSize;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * A cleared buffer with at least capacity bytes.
+     */
+    public ByteBuffer acquire(int capacity) {
+        acquired.incrementAndGet();
+        if (capacity <= bufferSize) {
+            ByteBuffer b = free.poll();
+            if (b != null) {
+                pooled.decrementAndGet();
+                return b.clear();
+            }
+        }
+        allocated.incrementAndGet();
+        int size = Math.max(capacity, bufferSize);
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    /**
+     * Returns a buffer from {@link #acquire}; it must not be used afterwards.
+     */
+    public void release(ByteBuffer b) {
+        if (b == null || b.capacity() != bufferSize || b.isDirect() != direct) return;
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        free.offer(b);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("bufferSize", bufferSize);
+        m.put("direct", direct);
+        m.put("pooled", pooled.get());
+        m.put("acquired", acquired.get());
+        m.put("allocated", allocated.get());
+        return m;
+    }
+}
@@ -0,0 +1,183 @@
+package com.trian.zimswitch.simulator.framing;
+
+import com.trian.zimswitch.simulator.iso.CompiledIsoPackager;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOPackager;
+import org.jpos.iso.ISOUtil;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Length-prefixed framing shared by the raw/NIO acceptors and the fleet terminals:
+ * <pre>
+ *   length (LengthFormat) | header/TPDU | ISO message
+ * </pre>
+ * Inbound frames are read into pooled heap buffers and unpacked in place after the stripped header
+ * bytes. Outbound frames are written as length, header (parsed once) and packed body without
+ * joining them into one array first.
+ */
+public final class FrameCodec {
+    private final LengthFormat format;
+    private final byte[] header;
+    private final int strip;
+    private final BufferPool pool;
+    private final ThreadLocal<byte[]> prefix;
+
+    /**
+     * @param header sent in front of every outbound message
+     * @param strip  header bytes skipped in front of every inbound message
+     * @param pool   heap buffers for inbound frames
+     */
+    public FrameCodec(LengthFormat format, byte[] header, int strip, BufferPool pool) {
+        if (pool.isDirect()) throw new IllegalArgumentException("Frames are unpacked from heap buffers");
+        this.format = format;
+        this.header = header;
+        this.strip = Math.max(0, strip);
+        this.pool = pool;
+        this.prefix = ThreadLocal.withInitial(() -> new byte[format.size()]);
+    }
+
+    /**
+     * Header bytes from hex; blank, "none" or "-" mean no header.
+     */
+    public static byte[] header(String hex) {
+        if (hex == null || hex.isBlank() || hex.equalsIgnoreCase("none") || hex.equals("-")) return new byte[0];
+        return ISOUtil.hex2byte(hex.trim());
+    }
+
+    public LengthFormat format() {
+        return format;
+    }
+
+    public byte[] header() {
+        return header;
+    }
+
+    public int headerLength() {
+        return header.length;
+    }
+
+    public int strip() {
+        return strip;
+    }
+
+    public BufferPool pool() {
+        return pool;
+    }
+
+    /**
+     * Reads one frame into a pooled buffer (position 0, limit the frame length, length header not
+     * included). Returns null on end of stream before a frame starts. Give the buffer back with
+     * {@link #release}.
+     */
+    public ByteBuffer read(InputStream in) throws IOException {
+        ByteBuffer b = pool.acquire(pool.bufferSize());
+        try {
+            if (!readFully(in, b.array(), b.arrayOffset(), format.size(), true)) {
+                pool.release(b);
+                return null;
+            }
+            int len = format.decode(b, 0);
+            if (len > b.capacity()) {
+                pool.release(b);
+                b = pool.acquire(len);
+            }
+            readFully(in, b.array(), b.arrayOffset(), len, false);
+            b.position(0).limit(len);
+            return b;
+        } catch (IOException | RuntimeException e) {
+            pool.release(b);
+            throw e;
+        }
+    }
+
+    /**
+     * Length of the frame whose length header starts at buf's position, or -1 if the header is
+     * not complete yet. Nothing is consumed.
+     */
+    public int frameLength(ByteBuffer buf) throws IOException {
+        return buf.remaining() < format.size() ? -1 : format.decode(buf, buf.position());
+    }
+
+    /**
+     * Moves the frame of len bytes after the length header at buf's position into a pooled buffer,
+     * as {@link #read} returns it.
+     */
+    public ByteBuffer take(ByteBuffer buf, int len) {
+        buf.position(buf.position() + format.size());
+        ByteBuffer b = pool.acquire(len);
+        buf.get(b.array(), b.arrayOffset(), len);
+        b.position(0).limit(len);
+        return b;
+    }
+
+    public void release(ByteBuffer frame) {
+        pool.release(frame);
+    }
+
+    /**
+     * Unpacks the message after the stripped header. The compiled packager reads it in place;
+     * other packagers need it copied out.
+     */
+    public ISOMsg unpack(ISOPackager packager, ByteBuffer frame) throws ISOException {
+        int skip = Math.min(strip, frame.remaining());
+        int off = frame.arrayOffset() + frame.position() + skip;
+        int len = frame.remaining() - skip;
+        ISOMsg m = new ISOMsg();
+        m.setPackager(packager);
+        if (packager instanceof CompiledIsoPackager compiled) {
+            compiled.unpack(m, frame.array(), off, len);
+        } else {
+            packager.unpack(m, Arrays.copyOfRange(frame.array(), off, off + len));
+        }
+        return m;
+    }
+
+    /**
+     * Writes length, header and body to out (normally buffered; the caller flushes).
+     */
+    public void write(OutputStream out, byte[] body) throws IOException {
+        byte[] p = prefix.get();
+        format.encode(frameLength(body), p, 0);
+        out.write(p, 0, p.length);
+        out.write(header);
+        out.write(body);
+    }
+
+    /**
+     * Length plus header, and the body, for a gathering channel write.
+     */
+    public ByteBuffer[] encode(byte[] body) {
+        byte[] p = new byte[format.size() + header.length];
+        format.encode(frameLength(body), p, 0);
+        System.arraycopy(header, 0, p, format.size(), header.length);
+        return new ByteBuffer[]{ByteBuffer.wrap(p), ByteBuffer.wrap(body)};
+    }
+
+    private int frameLength(byte[] body) {
+        int len = header.length + body.length;
+        if (len > format.maxLength()) {
+            throw new IllegalArgumentException("Frame of " + len + " bytes exceeds " + format + " maximum " + format.maxLength());
+        }
+        return len;
+    }
+
+    private static boolean readFully(InputStream in, byte[] b, int off, int len, boolean eofAllowed) throws IOException {
+        int n = 0;
+        while (n < len) {
+            int r = in.read(b, off + n, len - n);
+            if (r < 0) {
+                if (n == 0 && eofAllowed) return false;
+                throw new EOFException("Connection closed mid-frame");
+            }
+            n += r;
+        }
+        return true;
+    }
+}
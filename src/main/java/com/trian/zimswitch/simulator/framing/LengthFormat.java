@@ -0,0 +1,104 @@
+package com.trian.zimswitch.simulator.framing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Length header in front of every frame; the length counts the bytes after it (header/TPDU plus
+ * message).
+ */
+public enum LengthFormat {
+    /** 2-byte big-endian binary, as NACChannel */
+    BINARY2(2, 0xFFFF) {
+        @Override
+        public void encode(int length, byte[] dst, int off) {
+            dst[off] = (byte) (length >> 8);
+            dst[off + 1] = (byte) length;
+        }
+
+        @Override
+        public int decode(ByteBuffer src, int pos) {
+            return ((src.get(pos) & 0xFF) << 8) | (src.get(pos + 1) & 0xFF);
+        }
+    },
+    /** 4 ASCII decimal digits, as ASCIIChannel */
+    ASCII4(4, 9999) {
+        @Override
+        public void encode(int length, byte[] dst, int off) {
+            for (int i = 3; i >= 0; i--) {
+                dst[off + i] = (byte) ('0' + length % 10);
+                length /= 10;
+            }
+        }
+
+        @Override
+        public int decode(ByteBuffer src, int pos) throws IOException {
+            int len = 0;
+            for (int i = 0; i < 4; i++) {
+                int d = src.get(pos + i) - '0';
+                if (d < 0 || d > 9) throw new IOException("Invalid ASCII length header");
+                len = len * 10 + d;
+            }
+            return len;
+        }
+    },
+    /** 2 bytes of packed BCD, 4 digits */
+    BCD2(2, 9999) {
+        @Override
+        public void encode(int length, byte[] dst, int off) {
+            dst[off] = (byte) (((length / 1000) << 4) | (length / 100 % 10));
+            dst[off + 1] = (byte) (((length / 10 % 10) << 4) | (length % 10));
+        }
+
+        @Override
+        public int decode(ByteBuffer src, int pos) throws IOException {
+            int len = 0;
+            for (int i = 0; i < 2; i++) {
+                int b = src.get(pos + i) & 0xFF;
+                int hi = b >> 4, lo = b & 0x0F;
+                if (hi > 9 || lo > 9) throw new IOException("Invalid BCD length header");
+                len = len * 100 + hi * 10 + lo;
+            }
+            return len;
+        }
+    };
+
+    private final int size;
+    private final int maxLength;
+
+    LengthFormat(int size, int maxLength) {
+        this.size = size;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Bytes taken by the length header.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int maxLength() {
+        return maxLength;
+    }
+
+    public abstract void encode(int length, byte[] dst, int off);
+
+    /**
+     * Reads the length at the absolute position pos of src.
+     */
+    public abstract int decode(ByteBuffer src, int pos) throws IOException;
+
+    /**
+     * binary (or nac), ascii (or ascii4) and bcd.
+     */
+    public static LengthFormat of(String name) {
+        switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "binary": case "binary2": case "nac": return BINARY2;
+            case "ascii": case "ascii4": return ASCII4;
+            case "bcd": case "bcd2": return BCD2;
+            default: throw new IllegalArgumentException("Unknown length format '" + name + "' (binary, ascii or bcd)");
+        }
+    }
+}
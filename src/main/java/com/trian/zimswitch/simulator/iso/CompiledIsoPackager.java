@@ -0,0 +1,487 @@
+package com.trian.zimswitch.simulator.iso;
+
+import org.jpos.iso.IFA_BINARY;
+import org.jpos.iso.IFA_LLBINARY;
+import org.jpos.iso.IFA_LLCHAR;
+import org.jpos.iso.IFA_LLLBINARY;
+import org.jpos.iso.IFA_LLLCHAR;
+import org.jpos.iso.IFA_LLLLBINARY;
+import org.jpos.iso.IFA_LLLLCHAR;
+import org.jpos.iso.IFA_LLNUM;
+import org.jpos.iso.IFA_NUMERIC;
+import org.jpos.iso.IFB_BINARY;
+import org.jpos.iso.IFB_BITMAP;
+import org.jpos.iso.IF_CHAR;
+import org.jpos.iso.ISOBinaryField;
+import org.jpos.iso.ISOBitMap;
+import org.jpos.iso.ISOComponent;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOField;
+import org.jpos.iso.ISOFieldPackager;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.packager.GenericPackager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * {@link GenericPackager} whose pack/unpack run through codecs compiled from the field definitions
+ * (IFA_NUMERIC, IF_CHAR, IFA_LL*NUM/CHAR, IFA/IFB binary, IFB_BITMAP). Each codec writes straight
+ * into a reusable per-thread buffer instead of building a byte[] per field. Field types without a
+ * codec, and values a codec does not handle (overlong data, byte[] on a char field, nested
+ * messages), go through the original jPOS field packager, so the output stays byte-for-byte the
+ * same as GenericPackager's. That is verified once on a sample message when the codecs are compiled.
+ */
+public class CompiledIsoPackager extends GenericPackager {
+    private static final Logger log = LoggerFactory.getLogger(CompiledIsoPackager.class);
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[1024]);
+
+    private FieldCodec[] codecs;
+    private boolean secondaryBitmap;
+    // False when the layout has no primary bitmap or the self-check failed; everything goes to GenericPackager
+    private boolean active;
+
+    public CompiledIsoPackager(InputStream xml) throws ISOException {
+        super(xml);
+        compile();
+    }
+
+    public CompiledIsoPackager(ISOFieldPackager[] fields) throws ISOException {
+        super();
+        setFieldPackager(fields);
+        compile();
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    private void compile() {
+        int n = fld.length;
+        codecs = new FieldCodec[n];
+        for (int i = 0; i < n; i++) {
+            if (i == 1 || fld[i] == null) continue;
+            codecs[i] = compile(fld[i]);
+        }
+        active = n > 1 && codecs[0] != null && fld[1] instanceof IFB_BITMAP;
+        secondaryBitmap = active && fld[1].getLength() > 8;
+        if (active && !selfCheck()) {
+            active = false;
+        }
+        log.info("Compiled ISO packager {} ({} field codecs)", active ? "active" : "disabled, using GenericPackager",
+                Arrays.stream(codecs).filter(c -> c != null && !(c instanceof Delegate)).count());
+    }
+
+    private static FieldCodec compile(ISOFieldPackager fp) {
+        int len = fp.getLength();
+        // Exact class checks: subclasses may change padding or interpretation
+        Class<?> k = fp.getClass();
+        if (k == IFA_NUMERIC.class) return new FixedAscii(fp, len, (byte) '0', true);
+        if (k == IF_CHAR.class) return new FixedAscii(fp, len, (byte) ' ', false);
+        if (k == IFA_LLNUM.class || k == IFA_LLCHAR.class) return new VarAscii(fp, len, 2);
+        if (k == IFA_LLLCHAR.class) return new VarAscii(fp, len, 3);
+        if (k == IFA_LLLLCHAR.class) return new VarAscii(fp, len, 4);
+        if (k == IFB_BINARY.class) return new FixedBinary(fp, len);
+        if (k == IFA_BINARY.class) return new Hex(fp, len, 0);
+        if (k == IFA_LLBINARY.class) return new Hex(fp, len, 2);
+        if (k == IFA_LLLBINARY.class) return new Hex(fp, len, 3);
+        if (k == IFA_LLLLBINARY.class) return new Hex(fp, len, 4);
+        return new Delegate(fp);
+    }
+
+    @Override
+    public byte[] pack(ISOComponent c) throws ISOException {
+        if (!active || !(c instanceof ISOMsg) || getHeaderLength() > 0) return super.pack(c);
+        ISOMsg m = (ISOMsg) c;
+        int max = m.getMaxField();
+        // GenericPackager fails on a field it has no packager for; never drop it silently
+        if (max >= codecs.length) throw new ISOException("field packager '" + max + "' is null");
+        Buf buf = new Buf(SCRATCH.get());
+
+        ISOComponent mti = m.getComponent(0);
+        if (mti != null) codecs[0].pack(0, mti, buf);
+
+        // Bitmap: primary always, secondary when any field above 64 is present (same rule as IFB_BITMAP)
+        int bitmapPos = buf.pos;
+        int bitmapLen = secondaryBitmap && max > 64 ? 16 : 8;
+        buf.ensure(bitmapLen);
+        Arrays.fill(buf.b, bitmapPos, bitmapPos + bitmapLen, (byte) 0);
+        buf.pos += bitmapLen;
+        if (bitmapLen == 16) buf.b[bitmapPos] |= (byte) 0x80;
+
+        for (int i = 2; i <= max; i++) {
+            ISOComponent f = m.getComponent(i);
+            if (f == null) continue;
+            FieldCodec codec = codecs[i];
+            if (codec == null) throw new ISOException("null field " + i + " packager");
+            int bit = i - 1;
+            buf.b[bitmapPos + (bit >> 3)] |= (byte) (0x80 >> (bit & 7));
+            try {
+                codec.pack(i, f, buf);
+            } catch (ISOException e) {
+                throw new ISOException("error packing field " + i, e);
+            }
+        }
+        SCRATCH.set(buf.b);
+        return Arrays.copyOf(buf.b, buf.pos);
+    }
+
+    @Override
+    public int unpack(ISOComponent m, byte[] b) throws ISOException {
+        if (!active || !(m instanceof ISOMsg) || getHeaderLength() > 0) return super.unpack(m, b);
+        return unpackCompiled(m, b, 0, b.length);
+    }
+
+    /**
+     * Unpacks the message in b[offset, offset + length) without copying it out first, e.g. a frame
+     * in a pooled buffer after its TPDU. Falls back to a copy when the codecs are not active.
+     *
+     * @return bytes consumed
+     */
+    public int unpack(ISOComponent m, byte[] b, int offset, int length) throws ISOException {
+        if (!active || !(m instanceof ISOMsg) || getHeaderLength() > 0) {
+            return super.unpack(m, Arrays.copyOfRange(b, offset, offset + length));
+        }
+        return unpackCompiled(m, b, offset, offset + length) - offset;
+    }
+
+    private int unpackCompiled(ISOComponent m, byte[] b, int offset, int end) throws ISOException {
+        try {
+            int pos = codecs[0].unpack(0, m, b, offset, end);
+            if (end < pos + 8) throw new ISOException("Truncated bitmap");
+            boolean secondary = secondaryBitmap && (b[pos] & 0x80) != 0;
+            int bitmapLen = secondary ? 16 : 8;
+            if (end < pos + bitmapLen) throw new ISOException("Truncated secondary bitmap");
+            BitSet bmap = new BitSet(bitmapLen * 8);
+            for (int bit = 0; bit < bitmapLen * 8; bit++) {
+                if ((b[pos + (bit >> 3)] & (0x80 >> (bit & 7))) != 0) bmap.set(bit + 1);
+            }
+            m.set(new ISOBitMap(-1, bmap));
+            pos += bitmapLen;
+            for (int i = bmap.nextSetBit(2); i >= 0; i = bmap.nextSetBit(i + 1)) {
+                if (i >= codecs.length || codecs[i] == null) throw new ISOException("field packager '" + i + "' is null");
+                pos = codecs[i].unpack(i, m, b, pos, end);
+            }
+            return pos;
+        } catch (ISOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new ISOException("Unpack failed: " + e, e);
+        }
+    }
+
+    /**
+     * Packs a representative 1200 through both paths and round-trips it; any difference disables the codecs.
+     */
+    private boolean selfCheck() {
+        try {
+            ISOMsg m = new ISOMsg();
+            m.setPackager(this);
+            m.setMTI("1200");
+            String[][] sample = {
+                    {"2", "4929390123456781"}, {"3", "000000"}, {"4", "1000"}, {"7", "1017123456"},
+                    {"11", "000123"}, {"12", "123456"}, {"13", "1017"}, {"37", "101712000123"},
+                    {"41", "TERM1234"}, {"42", "MRC123456789012"}, {"49", "932"}, {"70", "301"}};
+            for (String[] f : sample) {
+                int i = Integer.parseInt(f[0]);
+                if (i < fld.length && fld[i] != null) m.set(i, f[1]);
+            }
+            if (fld.length > 52 && fld[52] != null) m.set(52, new byte[fld[52].getLength()]);
+            if (fld.length > 64 && fld[64] != null) m.set(64, new byte[fld[64].getLength()]);
+            m.recalcBitMap();
+            byte[] expected = super.pack(m);
+            byte[] actual = pack(m);
+            if (!Arrays.equals(expected, actual)) {
+                log.warn("Compiled packager output differs from GenericPackager; falling back");
+                return false;
+            }
+            ISOMsg viaCompiled = new ISOMsg();
+            unpack(viaCompiled, actual);
+            ISOMsg viaGeneric = new ISOMsg();
+            super.unpack(viaGeneric, expected);
+            for (int i = 0; i < fld.length; i++) {
+                if (i == 1) continue;
+                if (!Objects.deepEquals(viaGeneric.getValue(i), viaCompiled.getValue(i))) {
+                    log.warn("Compiled packager unpack differs on field {}; falling back", i);
+                    return false;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            log.warn("Compiled packager self-check failed ({}); falling back", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Growable write cursor over the per-thread scratch array.
+     */
+    static final class Buf {
+        byte[] b;
+        int pos;
+
+        Buf(byte[] b) {
+            this.b = b;
+        }
+
+        void ensure(int extra) {
+            if (pos + extra > b.length) {
+                b = Arrays.copyOf(b, Math.max(b.length * 2, pos + extra));
+            }
+        }
+
+        void put(byte[] src) {
+            ensure(src.length);
+            System.arraycopy(src, 0, b, pos, src.length);
+            pos += src.length;
+        }
+    }
+
+    abstract static class FieldCodec {
+        final ISOFieldPackager fp;
+
+        FieldCodec(ISOFieldPackager fp) {
+            this.fp = fp;
+        }
+
+        /**
+         * Appends the packed field; values outside the fast path are packed by the jPOS field packager.
+         */
+        abstract void pack(int field, ISOComponent c, Buf buf) throws ISOException;
+
+        /**
+         * Sets the unpacked field on m and returns the position after it; the message ends at end.
+         */
+        abstract int unpack(int field, ISOComponent m, byte[] b, int pos, int end) throws ISOException;
+
+        final void generic(ISOComponent c, Buf buf) throws ISOException {
+            buf.put(fp.pack(c));
+        }
+
+        final int genericUnpack(int field, ISOComponent m, byte[] b, int pos, int end) throws ISOException {
+            ISOComponent c = fp.createComponent(field);
+            // jPOS field packagers read up to b.length, so a message inside a larger buffer is cut out first
+            int n = end == b.length ? fp.unpack(c, b, pos) : fp.unpack(c, Arrays.copyOfRange(b, pos, end), 0);
+            m.set(c);
+            return pos + n;
+        }
+
+        static String stringValue(ISOComponent c) throws ISOException {
+            Object v = c instanceof ISOField ? c.getValue() : null;
+            return v instanceof String ? (String) v : null;
+        }
+
+        static void putAscii(Buf buf, String s, int len) {
+            for (int i = 0; i < len; i++) {
+                char ch = s.charAt(i);
+                buf.b[buf.pos++] = (byte) (ch > 0xFF ? '?' : ch);
+            }
+        }
+
+        static void putLength(Buf buf, int value, int digits) {
+            for (int i = digits - 1; i >= 0; i--) {
+                buf.b[buf.pos + i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            buf.pos += digits;
+        }
+
+        static int readLength(byte[] b, int pos, int digits) throws ISOException {
+            int len = 0;
+            for (int i = 0; i < digits; i++) {
+                int d = b[pos + i] - '0';
+                if (d < 0 || d > 9) throw new ISOException("Invalid character in length prefix");
+                len = len * 10 + d;
+            }
+            return len;
+        }
+    }
+
+    /**
+     * IFA_NUMERIC (left zero pad) and IF_CHAR (right space pad).
+     */
+    static final class FixedAscii extends FieldCodec {
+        final int len;
+        final byte pad;
+        final boolean left;
+
+        FixedAscii(ISOFieldPackager fp, int len, byte pad, boolean left) {
+            super(fp);
+            this.len = len;
+            this.pad = pad;
+            this.left = left;
+        }
+
+        @Override
+        void pack(int field, ISOComponent c, Buf buf) throws ISOException {
+            String s = stringValue(c);
+            if (s == null || s.length() > len) {
+                generic(c, buf);
+                return;
+            }
+            buf.ensure(len);
+            int padLen = len - s.length();
+            if (left) {
+                Arrays.fill(buf.b, buf.pos, buf.pos + padLen, pad);
+                buf.pos += padLen;
+                putAscii(buf, s, s.length());
+            } else {
+                putAscii(buf, s, s.length());
+                Arrays.fill(buf.b, buf.pos, buf.pos + padLen, pad);
+                buf.pos += padLen;
+            }
+        }
+
+        @Override
+        int unpack(int field, ISOComponent m, byte[] b, int pos, int end) throws ISOException {
+            if (pos + len > end) throw new ISOException("Field " + field + " truncated");
+            m.set(new ISOField(field, new String(b, pos, len, java.nio.charset.StandardCharsets.ISO_8859_1)));
+            return pos + len;
+        }
+    }
+
+    /**
+     * IFA_LLNUM, IFA_LLCHAR, IFA_LLLCHAR, IFA_LLLLCHAR: ASCII length prefix, no padding.
+     */
+    static final class VarAscii extends FieldCodec {
+        final int max;
+        final int digits;
+
+        VarAscii(ISOFieldPackager fp, int max, int digits) {
+            super(fp);
+            this.max = max;
+            this.digits = digits;
+        }
+
+        @Override
+        void pack(int field, ISOComponent c, Buf buf) throws ISOException {
+            String s = stringValue(c);
+            if (s == null || s.length() > max) {
+                generic(c, buf);
+                return;
+            }
+            buf.ensure(digits + s.length());
+            putLength(buf, s.length(), digits);
+            putAscii(buf, s, s.length());
+        }
+
+        @Override
+        int unpack(int field, ISOComponent m, byte[] b, int pos, int end) throws ISOException {
+            if (pos + digits > end) throw new ISOException("Field " + field + " truncated");
+            int len = readLength(b, pos, digits);
+            if (len > max) throw new ISOException("Field length " + len + " too long. Max: " + max);
+            pos += digits;
+            if (pos + len > end) throw new ISOException("Field " + field + " truncated");
+            m.set(new ISOField(field, new String(b, pos, len, java.nio.charset.StandardCharsets.ISO_8859_1)));
+            return pos + len;
+        }
+    }
+
+    /**
+     * IFB_BINARY: raw bytes, fixed length.
+     */
+    static final class FixedBinary extends FieldCodec {
+        final int len;
+
+        FixedBinary(ISOFieldPackager fp, int len) {
+            super(fp);
+            this.len = len;
+        }
+
+        @Override
+        void pack(int field, ISOComponent c, Buf buf) throws ISOException {
+            byte[] v = c instanceof ISOBinaryField ? c.getBytes() : null;
+            if (v == null || v.length != len) {
+                generic(c, buf);
+                return;
+            }
+            buf.put(v);
+        }
+
+        @Override
+        int unpack(int field, ISOComponent m, byte[] b, int pos, int end) throws ISOException {
+            if (pos + len > end) throw new ISOException("Field " + field + " truncated");
+            m.set(new ISOBinaryField(field, Arrays.copyOfRange(b, pos, pos + len)));
+            return pos + len;
+        }
+    }
+
+    /**
+     * IFA_BINARY (fixed) and IFA_LL/LLL/LLLLBINARY: bytes as uppercase ASCII hex, prefix counts bytes.
+     */
+    static final class Hex extends FieldCodec {
+        final int max;
+        final int digits;
+
+        Hex(ISOFieldPackager fp, int max, int digits) {
+            super(fp);
+            this.max = max;
+            this.digits = digits;
+        }
+
+        @Override
+        void pack(int field, ISOComponent c, Buf buf) throws ISOException {
+            byte[] v = c instanceof ISOBinaryField ? c.getBytes() : null;
+            if (v == null || (digits == 0 ? v.length != max : v.length > max)) {
+                generic(c, buf);
+                return;
+            }
+            buf.ensure(digits + v.length * 2);
+            if (digits > 0) putLength(buf, v.length, digits);
+            for (byte x : v) {
+                buf.b[buf.pos++] = HEX[(x >> 4) & 0x0F];
+                buf.b[buf.pos++] = HEX[x & 0x0F];
+            }
+        }
+
+        @Override
+        int unpack(int field, ISOComponent m, byte[] b, int pos, int end) throws ISOException {
+            int len = max;
+            if (digits > 0) {
+                if (pos + digits > end) throw new ISOException("Field " + field + " truncated");
+                len = readLength(b, pos, digits);
+                if (len > max) throw new ISOException("Field length " + len + " too long. Max: " + max);
+                pos += digits;
+            }
+            if (pos + len * 2 > end) throw new ISOException("Field " + field + " truncated");
+            byte[] v = new byte[len];
+            for (int i = 0; i < len; i++) {
+                v[i] = (byte) ((nibble(b[pos + 2 * i]) << 4) | nibble(b[pos + 2 * i + 1]));
+            }
+            m.set(new ISOBinaryField(field, v));
+            return pos + len * 2;
+        }
+
+        private static int nibble(byte h) throws ISOException {
+            if (h >= '0' && h <= '9') return h - '0';
+            if (h >= 'A' && h <= 'F') return h - 'A' + 10;
+            if (h >= 'a' && h <= 'f') return h - 'a' + 10;
+            throw new ISOException("Invalid hex digit " + (char) h);
+        }
+    }
+
+    /**
+     * Any other field type: the jPOS field packager as-is.
+     */
+    static final class Delegate extends FieldCodec {
+        Delegate(ISOFieldPackager fp) {
+            super(fp);
+        }
+
+        @Override
+        void pack(int field, ISOComponent c, Buf buf) throws ISOException {
+            generic(c, buf);
+        }
+
+        @Override
+        int unpack(int field, ISOComponent m, byte[] b, int pos, int end) throws ISOException {
+            return genericUnpack(field, m, b, pos, end);
+        }
+    }
+}
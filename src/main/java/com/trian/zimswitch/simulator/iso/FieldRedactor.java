@@ -0,0 +1,281 @@
+package com.trian.zimswitch.simulator.iso;
+
+import org.jpos.iso.ISOBasePackager;
+import org.jpos.iso.ISOBinaryField;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOPackager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The one place sensitive ISO fields are masked: JSON responses, the traffic log, jPOS log events
+ * and frame capture all go through it. The policy of each field is derived from its name in the
+ * packager definition (PAN, track data, PIN, expiry, MAC, ICC and security data) and can be
+ * overridden with redaction.fields, e.g. "48:hide,36:track,53:none".
+ * <p>
+ * Values are masked into a per-thread char buffer without regex or intermediate strings; masked
+ * values keep their length so fixed-length fields still pack.
+ */
+@Component
+public class FieldRedactor {
+    private static final Logger log = LoggerFactory.getLogger(FieldRedactor.class);
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final int MAX_FIELD = 192;
+
+    public enum Policy {
+        /** Logged as is */
+        NONE,
+        /** First 6 and last 4 digits kept */
+        PAN,
+        /** PAN part masked as PAN, everything after the first separator masked */
+        TRACK,
+        /** Every character masked */
+        HIDE
+    }
+
+    /**
+     * A redacted value in the caller's per-thread buffer; valid until the next redact call on the
+     * same thread.
+     */
+    public static final class Redacted {
+        char[] chars = new char[256];
+        int length;
+
+        public char[] chars() {
+            return chars;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+
+        private char[] ensure(int len) {
+            if (chars.length < len) chars = new char[Math.max(len, chars.length * 2)];
+            length = len;
+            return chars;
+        }
+    }
+
+    private static final ThreadLocal<Redacted> BUFFER = ThreadLocal.withInitial(Redacted::new);
+
+    private final ISOPackager packager;
+    private final Policy[] policies = new Policy[MAX_FIELD + 1];
+    private final int[] sensitive;
+
+    public FieldRedactor(ISOPackager packager, @Value("${redaction.fields:}") String overrides) {
+        this.packager = packager;
+        for (int i = 0; i <= MAX_FIELD; i++) policies[i] = fromName(describe(packager, i));
+        for (String entry : overrides.split(",")) {
+            if (entry.isBlank()) continue;
+            int colon = entry.indexOf(':');
+            if (colon < 0) throw new IllegalArgumentException("redaction.fields entry '" + entry + "' is not field:policy");
+            int field = Integer.parseInt(entry.substring(0, colon).trim());
+            if (field < 1 || field > MAX_FIELD) throw new IllegalArgumentException("redaction.fields: no field " + field);
+            policies[field] = Policy.valueOf(entry.substring(colon + 1).trim().toUpperCase(Locale.ROOT));
+        }
+        int n = 0;
+        for (Policy p : policies) if (p != Policy.NONE) n++;
+        this.sensitive = new int[n];
+        for (int i = 0, k = 0; i <= MAX_FIELD; i++) if (policies[i] != Policy.NONE) sensitive[k++] = i;
+        log.info("Field redaction: {}", policies());
+    }
+
+    /**
+     * Policy derived from a packager field description.
+     */
+    static Policy fromName(String name) {
+        if (name == null) return Policy.NONE;
+        String n = name.toUpperCase(Locale.ROOT);
+        if (n.contains("PRIMARY ACCOUNT")) return Policy.PAN;
+        if (n.contains("TRACK")) return Policy.TRACK;
+        if (n.contains("PIN DATA") || n.contains("EXPIRATION") || n.contains("MESSAGE AUTHENTICATION")
+                || n.contains("ICC") || n.contains("SECURITY RELATED") || n.contains("CARD VERIFICATION")) {
+            return Policy.HIDE;
+        }
+        return Policy.NONE;
+    }
+
+    private static String describe(ISOPackager packager, int field) {
+        try {
+            if (packager instanceof ISOBasePackager b && b.getFieldPackager(field) == null) return null;
+            return packager.getFieldDescription(null, field);
+        } catch (RuntimeException e) {
+            // Field not defined by this packager
+            return null;
+        }
+    }
+
+    public Policy policy(int field) {
+        return field >= 0 && field <= MAX_FIELD ? policies[field] : Policy.NONE;
+    }
+
+    public boolean isSensitive(int field) {
+        return policy(field) != Policy.NONE;
+    }
+
+    /**
+     * Field -> policy for every field that is not logged as is.
+     */
+    public Map<Integer, Policy> policies() {
+        Map<Integer, Policy> m = new LinkedHashMap<>();
+        for (int f : sensitive) m.put(f, policies[f]);
+        return m;
+    }
+
+    /**
+     * Redacts a character value into this thread's buffer.
+     */
+    public Redacted redact(int field, String value) {
+        Redacted r = BUFFER.get();
+        int n = value.length();
+        char[] buf = r.ensure(n);
+        value.getChars(0, n, buf, 0);
+        apply(policy(field), buf, n);
+        return r;
+    }
+
+    /**
+     * Hex-encodes a binary value into this thread's buffer, redacted by the field's policy.
+     */
+    public Redacted redact(int field, byte[] value) {
+        Redacted r = BUFFER.get();
+        char[] buf = r.ensure(value.length * 2);
+        for (int k = 0; k < value.length; k++) {
+            buf[2 * k] = HEX[(value[k] >> 4) & 0x0F];
+            buf[2 * k + 1] = HEX[value[k] & 0x0F];
+        }
+        apply(policy(field), buf, value.length * 2);
+        return r;
+    }
+
+    /**
+     * Redacted value of a field as a string (null if absent); for summaries and non-hot paths.
+     */
+    public String redactedString(ISOMsg m, int field) {
+        if (!m.hasField(field)) return null;
+        if (m.getComponent(field) instanceof ISOBinaryField) {
+            byte[] b = m.getBytes(field);
+            return b == null ? null : redact(field, b).toString();
+        }
+        String v = m.getString(field);
+        if (v == null) return null;
+        return policy(field) == Policy.NONE ? v : redact(field, v).toString();
+    }
+
+    /**
+     * Copy of m with every sensitive field masked in place: character fields keep their length,
+     * binary fields are zeroed.
+     */
+    public ISOMsg redactedCopy(ISOMsg m) {
+        ISOMsg copy = (ISOMsg) m.clone();
+        redactInPlace(copy);
+        return copy;
+    }
+
+    private void redactInPlace(ISOMsg m) {
+        for (int f : sensitive) {
+            if (!m.hasField(f)) continue;
+            if (m.getComponent(f) instanceof ISOBinaryField) {
+                byte[] b = m.getBytes(f);
+                if (b != null) m.set(f, new byte[b.length]);
+            } else {
+                String v = m.getString(f);
+                if (v != null) m.set(f, redact(f, v).toString());
+            }
+        }
+    }
+
+    /**
+     * Redacts a captured frame: the body after headerLength bytes is unpacked, sensitive fields
+     * masked as in {@link #redactedCopy} and repacked behind the original header.
+     *
+     * @return the redacted frame, or null if it could not be unpacked or repacked
+     */
+    public byte[] redactFrame(byte[] b, int offset, int len, int headerLength) {
+        if (headerLength < 0 || headerLength > len) return null;
+        try {
+            byte[] body = new byte[len - headerLength];
+            System.arraycopy(b, offset + headerLength, body, 0, body.length);
+            ISOMsg m = new ISOMsg();
+            m.setPackager(packager);
+            packager.unpack(m, body);
+            boolean any = false;
+            for (int f : sensitive) {
+                if (m.hasField(f)) {
+                    any = true;
+                    break;
+                }
+            }
+            if (!any) {
+                byte[] out = new byte[len];
+                System.arraycopy(b, offset, out, 0, len);
+                return out;
+            }
+            redactInPlace(m);
+            byte[] packed = packager.pack(m);
+            byte[] out = new byte[headerLength + packed.length];
+            System.arraycopy(b, offset, out, 0, headerLength);
+            System.arraycopy(packed, 0, out, headerLength, packed.length);
+            return out;
+        } catch (ISOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void apply(Policy p, char[] buf, int n) {
+        switch (p) {
+            case NONE -> { }
+            case PAN -> maskPan(buf, 0, n);
+            case TRACK -> maskTrack(buf, n);
+            case HIDE -> {
+                for (int k = 0; k < n; k++) buf[k] = 'X';
+            }
+        }
+    }
+
+    /**
+     * Masks the digits of buf[from, to) except the first 6 and last 4; separators and padding stay.
+     * Numbers of 10 digits or fewer are left alone.
+     */
+    private static void maskPan(char[] buf, int from, int to) {
+        int digits = 0;
+        for (int k = from; k < to; k++) if (isDigit(buf[k])) digits++;
+        if (digits <= 10) return;
+        int seen = 0;
+        for (int k = from; k < to; k++) {
+            if (!isDigit(buf[k])) continue;
+            if (seen >= 6 && seen < digits - 4) buf[k] = 'X';
+            seen++;
+        }
+    }
+
+    /**
+     * Track 1 (B PAN ^ NAME ^ data) and track 2 (PAN = data): the PAN is masked like field 2 and
+     * every character after the first separator except further separators is masked.
+     */
+    private static void maskTrack(char[] buf, int n) {
+        int sep = 0;
+        while (sep < n && buf[sep] != '=' && buf[sep] != '^' && buf[sep] != 'D') sep++;
+        maskPan(buf, 0, sep);
+        for (int k = sep + 1; k < n; k++) {
+            if (buf[k] != '=' && buf[k] != '^') buf[k] = 'X';
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
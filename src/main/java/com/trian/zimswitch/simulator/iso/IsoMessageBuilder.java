@@ -5,12 +5,16 @@ import org.jpos.iso.*;
 
 import java.time.*;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Builds minimal ISO8583 requests for financial, reversal, and echo.
+ * Financial requests come from a {@link MessageTemplate}; the default templates are prepared
+ * once, so only fields 7, 11, 12, 13 and 37 are filled per message.
  * Fields populated:
  *   0: MTI
  *   2: PAN
@@ -28,18 +32,44 @@ import java.util.concurrent.ThreadLocalRandom;
  *   64: MAC (dummy)
  */
 public class IsoMessageBuilder {
+    // Override keys that change a template's fixed fields
+    private static final String[] TEMPLATE_KEYS = {"2", "3", "4", "41", "42", "49", "52", "64"};
+
     private final ISOPackager packager;
+    private final MessageTemplate default1200;
+    private final MessageTemplate default1400;
 
     public IsoMessageBuilder(ISOPackager packager) {
         this.packager = packager;
+        this.default1200 = newTemplate("1200", Collections.emptyMap());
+        this.default1400 = newTemplate("1400", Collections.emptyMap());
     }
 
     public ISOMsg build1200(Map<String, String> overrides) {
-        return baseFinancial("1200", overrides);
+        return template("1200", overrides).newMessage(overrides);
     }
 
     public ISOMsg build1400(Map<String, String> overrides) {
-        return baseFinancial("1400", overrides);
+        return template("1400", overrides).newMessage(overrides);
+    }
+
+    /**
+     * Template for a financial MTI with the fixed fields taken from overrides (or defaults).
+     * Callers sending many messages with the same overrides should keep the returned template.
+     */
+    public MessageTemplate template(String mti, Map<String, String> overrides) {
+        boolean custom = false;
+        for (String k : TEMPLATE_KEYS) {
+            if (overrides.containsKey(k)) {
+                custom = true;
+                break;
+            }
+        }
+        if (!custom) {
+            if ("1200".equals(mti)) return default1200;
+            if ("1400".equals(mti)) return default1400;
+        }
+        return newTemplate(mti, overrides);
     }
 
     /**
@@ -57,8 +87,8 @@ public class IsoMessageBuilder {
         // Transmission Date & Time (MMDDhhmmss)
         m.set(7, overrides.getOrDefault("7", f7));
 
-        // System Trace Audit Number (STAN)
-        m.set(11, overrides.getOrDefault("11", IsoUtil.generateStan()));
+        // System Trace Audit Number (STAN), from the generator shared with all other requests
+        m.set(11, overrides.getOrDefault("11", StanGenerator.nextStan()));
 
         // Local Transaction Time (hhmmss)
         m.set(12, overrides.getOrDefault("12", IsoUtil.localTime()));
@@ -73,58 +103,23 @@ public class IsoMessageBuilder {
         return m;
     }
 
-    private ISOMsg baseFinancial(String mti, Map<String, String> overrides) {
-        ISOMsg m = base(mti, overrides);
-        m.set(2, overrides.getOrDefault("2", "4929390123456781"));
-        m.set(3, overrides.getOrDefault("3", "000000"));
-        m.set(4, overrides.getOrDefault("4", "000000001000")); // 1000 cents (10.00)
+    private MessageTemplate newTemplate(String mti, Map<String, String> overrides) {
+        List<ISOComponent> fixed = new ArrayList<>();
+        fixed.add(new ISOField(0, mti));
+        fixed.add(new ISOField(2, overrides.getOrDefault("2", "4929390123456781")));
+        fixed.add(new ISOField(3, overrides.getOrDefault("3", "000000")));
+        fixed.add(new ISOField(4, overrides.getOrDefault("4", "000000001000"))); // 1000 cents (10.00)
+        fixed.add(new ISOField(41, overrides.getOrDefault("41", "TERM1234")));
+        fixed.add(new ISOField(42, overrides.getOrDefault("42", "MRC123456789012")));
+        fixed.add(new ISOField(49, overrides.getOrDefault("49", "932"))); // Default ZWL
         // Placeholders for PIN/MAC if packager defines them (when using ISOBasePackager)
-        if (hasFieldDefinition(m.getPackager(), 52)) {
-            m.set(52, ISOUtil.hex2byte(overrides.getOrDefault("52", "0000000000000000"))); // 8-byte zero PIN block
-        }
-        if (hasFieldDefinition(m.getPackager(), 64)) {
-            m.set(64, ISOUtil.hex2byte(overrides.getOrDefault("64", "0000000000000000"))); // 8-byte zero MAC
+        if (hasFieldDefinition(packager, 52)) {
+            fixed.add(new ISOBinaryField(52, ISOUtil.hex2byte(overrides.getOrDefault("52", "0000000000000000")))); // 8-byte zero PIN block
         }
-        return m;
-    }
-
-    private ISOMsg base(String mti, Map<String, String> overrides) {
-        ISOMsg m = new ISOMsg();
-        m.setPackager(packager);
-        try {
-            m.setMTI(mti);
-        } catch (ISOException e) {
-            // Fallback to setting field 0 directly if setMTI is not supported
-            m.set(0, mti);
+        if (hasFieldDefinition(packager, 64)) {
+            fixed.add(new ISOBinaryField(64, ISOUtil.hex2byte(overrides.getOrDefault("64", "0000000000000000")))); // 8-byte zero MAC
         }
-
-        ZonedDateTime now = ZonedDateTime.now(ZoneId.of("UTC"));
-
-        String stan = overrides.getOrDefault("11", StanGenerator.nextStan());
-        String rrn = overrides.getOrDefault("37", generateRRN(now, stan));
-
-        m.set(7, format(now, "MMddHHmmss"));
-        m.set(11, stan);
-        m.set(12, format(now, "HHmmss"));
-        m.set(13, format(now, "MMdd"));
-        m.set(37, rrn);
-        m.set(41, overrides.getOrDefault("41", "TERM1234"));
-        m.set(42, overrides.getOrDefault("42", "MRC123456789012"));
-        m.set(49, overrides.getOrDefault("49", "932")); // Default ZWL
-        return m;
-    }
-
-    private static String format(ZonedDateTime dt, String pattern) {
-        return dt.format(java.time.format.DateTimeFormatter.ofPattern(pattern));
-    }
-
-    private static String generateRRN(ZonedDateTime dt, String stan) {
-        // Simple 12-digit RRN: mmddHH + last6(stan/epoch seconds)
-        String prefix = format(dt, "MMddHH");
-        String tail = String.format("%06d", Math.abs((int) (System.currentTimeMillis() / 1000) % 1000000));
-        String rrn = (prefix + tail);
-        if (rrn.length() > 12) rrn = rrn.substring(rrn.length() - 12);
-        return rrn;
+        return new MessageTemplate(packager, fixed.toArray(new ISOComponent[0]));
     }
 
     private static boolean hasFieldDefinition(ISOPackager packager, int field) {
@@ -142,25 +137,29 @@ public class IsoMessageBuilder {
 
     public final class IsoUtil {
 
+        private static final DateTimeFormatter TRANSMISSION = DateTimeFormatter.ofPattern("MMddHHmmss");
+        private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HHmmss");
+        private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("MMdd");
+
         private IsoUtil() {}
 
         public static String transmissionDateTime() {
             return LocalDateTime.now()
-                    .format(DateTimeFormatter.ofPattern("MMddHHmmss"));
+                    .format(TRANSMISSION);
         }
 
         public static String localTime() {
             return LocalTime.now()
-                    .format(DateTimeFormatter.ofPattern("HHmmss"));
+                    .format(TIME);
         }
 
         public static String localDate() {
             return LocalDate.now()
-                    .format(DateTimeFormatter.ofPattern("MMdd"));
+                    .format(DATE);
         }
 
         public static String generateStan() {
-            return String.format("%06d", ThreadLocalRandom.current().nextInt(0, 1_000_000));
+            return StanGenerator.nextStan();
         }
     }
 
@@ -0,0 +1,111 @@
+package com.trian.zimswitch.simulator.iso;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import org.jpos.iso.ISOBinaryField;
+import org.jpos.iso.ISOBitMap;
+import org.jpos.iso.ISOComponent;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+
+/**
+ * Writes an ISOMsg straight to the JSON generator as
+ * {"mti":"1210","fields":{"0":"1210","2":"492939XXXXXX6781",...}}, without intermediate maps.
+ * Present fields are found with hasField up to getMaxField; binary fields are hex-encoded, and
+ * sensitive fields are masked by the {@link FieldRedactor} in its per-thread buffer.
+ */
+@JsonComponent
+public class IsoMsgJsonSerializer extends JsonSerializer<ISOMsg> {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final String[] NAMES = new String[193];
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[256]);
+
+    static {
+        for (int i = 0; i < NAMES.length; i++) NAMES[i] = Integer.toString(i);
+    }
+
+    private final FieldRedactor redactor;
+
+    public IsoMsgJsonSerializer(FieldRedactor redactor) {
+        this.redactor = redactor;
+    }
+
+    @Override
+    public Class<ISOMsg> handledType() {
+        return ISOMsg.class;
+    }
+
+    @Override
+    public void serialize(ISOMsg m, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName("mti");
+        String mti = mti(m);
+        if (mti != null) gen.writeString(mti); else gen.writeNull();
+        gen.writeFieldName("fields");
+        gen.writeStartObject();
+        if (m.hasField(0)) writeField(m, 0, gen);
+        // The unpacked bitmap goes stale as soon as a field is set or unset, so ask the message
+        int max = m.getMaxField();
+        for (int i = 2; i <= max; i++) {
+            if (m.hasField(i)) writeField(m, i, gen);
+        }
+        gen.writeEndObject();
+        gen.writeEndObject();
+    }
+
+    private void writeField(ISOMsg m, int i, JsonGenerator gen) throws IOException {
+        gen.writeFieldName(i < NAMES.length ? NAMES[i] : Integer.toString(i));
+        ISOComponent c = m.getComponent(i);
+        if (c instanceof ISOBinaryField || c instanceof ISOBitMap) {
+            byte[] b = m.getBytes(i);
+            if (b == null) {
+                gen.writeNull();
+                return;
+            }
+            if (redactor.isSensitive(i)) {
+                writeRedacted(redactor.redact(i, b), gen);
+                return;
+            }
+            char[] buf = buffer(b.length * 2);
+            for (int k = 0; k < b.length; k++) {
+                buf[2 * k] = HEX[(b[k] >> 4) & 0x0F];
+                buf[2 * k + 1] = HEX[b[k] & 0x0F];
+            }
+            gen.writeString(buf, 0, b.length * 2);
+            return;
+        }
+        String value = m.getString(i);
+        if (value == null) {
+            gen.writeNull();
+        } else if (redactor.isSensitive(i)) {
+            writeRedacted(redactor.redact(i, value), gen);
+        } else {
+            gen.writeString(value);
+        }
+    }
+
+    private static void writeRedacted(FieldRedactor.Redacted r, JsonGenerator gen) throws IOException {
+        gen.writeString(r.chars(), 0, r.length());
+    }
+
+    private static String mti(ISOMsg m) {
+        try {
+            return m.getMTI();
+        } catch (ISOException e) {
+            return m.hasField(0) ? m.getString(0) : null;
+        }
+    }
+
+    private static char[] buffer(int len) {
+        char[] buf = BUFFER.get();
+        if (buf.length < len) {
+            buf = new char[Math.max(len, buf.length * 2)];
+            BUFFER.set(buf);
+        }
+        return buf;
+    }
+}
@@ -0,0 +1,127 @@
+package com.trian.zimswitch.simulator.iso;
+
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOFieldPackager;
+import org.jpos.iso.ISOPackager;
+import org.jpos.iso.packager.GenericPackager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loads the switch packager from classpath resource 'packager/isoswitch.xml'.
+ * Used by the Spring config and by code running outside the context (benchmarks, tools).
+ * <p>
+ * Sources:
+ * <ul>
+ *   <li>remote: DOCTYPE points at the remote DTD (original behaviour, needs network)</li>
+ *   <li>classpath: DOCTYPE points at the bundled packager/genericpackager.dtd</li>
+ *   <li>descriptor: field definitions from packager/isoswitch.bin, generated at build time by
+ *       {@link PackagerDescriptor}; falls back to classpath when it is missing or stale</li>
+ * </ul>
+ */
+public final class IsoPackagerFactory {
+    private static final Logger log = LoggerFactory.getLogger(IsoPackagerFactory.class);
+
+    private static final String XML = "packager/isoswitch.xml";
+    private static final String DESCRIPTOR = "packager/isoswitch.bin";
+    private static final String LOCAL_DTD = "packager/genericpackager.dtd";
+    private static final String REMOTE_DTD = "http://45.94.58.51/genericpackager.dtd";
+
+    private IsoPackagerFactory() {}
+
+    /**
+     * Offline packager (descriptor source).
+     */
+    public static ISOPackager create(String codec) throws Exception {
+        return create(codec, "descriptor");
+    }
+
+    /**
+     * @param codec "generic" for jPOS GenericPackager, "compiled" for {@link CompiledIsoPackager}
+     * @param source "remote", "classpath" or "descriptor"
+     */
+    public static ISOPackager create(String codec, String source) throws Exception {
+        long start = System.nanoTime();
+        ClassLoader cl = IsoPackagerFactory.class.getClassLoader();
+        byte[] xml = readResource(cl, XML);
+        if (xml == null) {
+            throw new IllegalStateException("Packager resource not found on classpath: " + XML);
+        }
+        ISOPackager packager = null;
+        if ("descriptor".equalsIgnoreCase(source)) {
+            packager = fromDescriptor(cl, xml, codec);
+            source = packager != null ? "descriptor" : "classpath";
+        }
+        if (packager == null) {
+            String dtd;
+            if ("remote".equalsIgnoreCase(source)) {
+                dtd = REMOTE_DTD;
+            } else {
+                URL local = cl.getResource(LOCAL_DTD);
+                if (local == null) {
+                    throw new IllegalStateException("DTD resource not found on classpath: " + LOCAL_DTD);
+                }
+                dtd = local.toExternalForm();
+            }
+            packager = fromXml(withDoctype(new String(xml, StandardCharsets.UTF_8), dtd), codec);
+            source = source + " (DTD " + dtd + ")";
+        }
+        log.info("Loaded ISO packager from {} with codec {} in {} ms", source, codec, (System.nanoTime() - start) / 1_000_000);
+        return packager;
+    }
+
+    private static ISOPackager fromDescriptor(ClassLoader cl, byte[] xml, String codec) throws ISOException {
+        ISOFieldPackager[] fields;
+        try (InputStream in = cl.getResourceAsStream(DESCRIPTOR)) {
+            if (in == null) {
+                log.warn("Packager descriptor {} not on classpath, parsing {}", DESCRIPTOR, XML);
+                return null;
+            }
+            fields = PackagerDescriptor.read(in, PackagerDescriptor.checksum(xml));
+        } catch (Exception e) {
+            log.warn("Could not read packager descriptor {}: {}", DESCRIPTOR, e.getMessage());
+            return null;
+        }
+        if (fields == null) {
+            log.warn("Packager descriptor {} is stale (built from a different {}), parsing the XML", DESCRIPTOR, XML);
+            return null;
+        }
+        if ("compiled".equalsIgnoreCase(codec)) {
+            return new CompiledIsoPackager(fields);
+        }
+        GenericPackager p = new GenericPackager();
+        p.setFieldPackager(fields);
+        return p;
+    }
+
+    private static ISOPackager fromXml(String xml, String codec) throws ISOException {
+        InputStream is = new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+        if ("compiled".equalsIgnoreCase(codec)) {
+            return new CompiledIsoPackager(is);
+        }
+        return new GenericPackager(is);
+    }
+
+    private static String withDoctype(String xml, String dtd) {
+        if (xml.contains("<!DOCTYPE isopackager")) {
+            return xml.replaceAll("<!DOCTYPE\\s+isopackager\\s+SYSTEM\\s+\"[^\"]*\">", "<!DOCTYPE isopackager SYSTEM \"" + dtd + "\">");
+        }
+        // Insert DOCTYPE after XML declaration if missing
+        int idx = xml.indexOf('\n');
+        if (idx > -1 && xml.startsWith("<?xml")) {
+            return xml.substring(0, idx + 1) + "<!DOCTYPE isopackager SYSTEM \"" + dtd + "\">\n" + xml.substring(idx + 1);
+        }
+        return "<!DOCTYPE isopackager SYSTEM \"" + dtd + "\">\n" + xml;
+    }
+
+    private static byte[] readResource(ClassLoader cl, String name) throws java.io.IOException {
+        try (InputStream in = cl.getResourceAsStream(name)) {
+            return in == null ? null : in.readAllBytes();
+        }
+    }
+}
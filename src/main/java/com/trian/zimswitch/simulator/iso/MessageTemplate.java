@@ -0,0 +1,59 @@
+package com.trian.zimswitch.simulator.iso;
+
+import com.trian.zimswitch.simulator.util.IsoClock;
+import com.trian.zimswitch.simulator.util.RrnGenerator;
+import com.trian.zimswitch.simulator.util.StanGenerator;
+import org.jpos.iso.ISOComponent;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOPackager;
+
+import java.util.Map;
+
+/**
+ * A request whose fixed fields (MTI, PAN, processing code, amount, terminal/merchant, currency,
+ * PIN block, MAC) are prepared once. {@link #newMessage} only stamps the per-message fields
+ * 7, 11, 12, 13 and 37, using {@link IsoClock} for the date/time values and {@link StanGenerator}
+ * / {@link RrnGenerator} for the trace numbers.
+ * <p>
+ * The fixed field components are shared by every message from the template; they are never
+ * modified in place (ISOMsg.set replaces components), so sharing is safe.
+ */
+public final class MessageTemplate {
+    private final ISOPackager packager;
+    private final ISOComponent[] fixed;
+
+    MessageTemplate(ISOPackager packager, ISOComponent[] fixed) {
+        this.packager = packager;
+        this.fixed = fixed;
+    }
+
+    public ISOMsg newMessage() {
+        return newMessage(null, null);
+    }
+
+    /**
+     * Honors overrides["11"] (STAN) and overrides["37"] (RRN); other keys are fixed by the template.
+     */
+    public ISOMsg newMessage(Map<String, String> overrides) {
+        if (overrides == null || overrides.isEmpty()) return newMessage();
+        return newMessage(overrides.get("11"), overrides.get("37"));
+    }
+
+    private ISOMsg newMessage(String stan, String rrn) {
+        IsoClock.Tick now = IsoClock.now();
+        ISOMsg m = new ISOMsg();
+        m.setPackager(packager);
+        try {
+            for (ISOComponent c : fixed) m.set(c);
+        } catch (ISOException e) {
+            throw new IllegalStateException("Invalid template component: " + e.getMessage(), e);
+        }
+        m.set(7, now.transmission);
+        m.set(11, stan != null ? stan : StanGenerator.nextStan());
+        m.set(12, now.time);
+        m.set(13, now.date);
+        m.set(37, rrn != null ? rrn : RrnGenerator.nextRrn());
+        return m;
+    }
+}
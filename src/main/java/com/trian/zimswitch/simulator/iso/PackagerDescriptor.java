@@ -0,0 +1,131 @@
+package com.trian.zimswitch.simulator.iso;
+
+import org.jpos.iso.ISOFieldPackager;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary form of a flat GenericPackager XML (isofield elements only), written at build
+ * time so startup can skip XML parsing and DTD resolution. Layout:
+ * <pre>
+ *   int magic, short version, long crc32(xml), short maxField, short count,
+ *   count x (short id, UTF class, int length, UTF name, boolean pad)
+ * </pre>
+ * The CRC of the source XML is kept so a descriptor that no longer matches the XML is ignored.
+ */
+public final class PackagerDescriptor {
+    private static final int MAGIC = 0x49534F44; // "ISOD"
+    private static final short VERSION = 1;
+    private static final Set<String> FIELD_ATTRIBUTES = Set.of("id", "length", "name", "class", "pad");
+
+    private PackagerDescriptor() {}
+
+    public static long checksum(byte[] xml) {
+        CRC32 crc = new CRC32();
+        crc.update(xml);
+        return crc.getValue();
+    }
+
+    /**
+     * Compiles the packager XML into a descriptor. Only flat layouts are supported; nested
+     * isofieldpackager elements, isopackager attributes and isofield attributes other than id,
+     * length, name, class and pad (e.g. token, trim) are rejected with IllegalArgumentException.
+     */
+    public static void write(byte[] xml, OutputStream out) throws Exception {
+        DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+        // The DTD is only needed for validation, which the runtime XML path still does
+        f.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        DocumentBuilder db = f.newDocumentBuilder();
+        Document doc = db.parse(new ByteArrayInputStream(xml));
+        Element root = doc.getDocumentElement();
+        if (root.getAttributes().getLength() > 0 || root.getElementsByTagName("isofieldpackager").getLength() > 0) {
+            throw new IllegalArgumentException("Only flat packagers without isopackager attributes can be compiled");
+        }
+        NodeList fields = root.getElementsByTagName("isofield");
+        int maxField = 0;
+        for (int i = 0; i < fields.getLength(); i++) {
+            Element e = (Element) fields.item(i);
+            NamedNodeMap attrs = e.getAttributes();
+            for (int a = 0; a < attrs.getLength(); a++) {
+                String attr = attrs.item(a).getNodeName();
+                // token, trim and anything newer would be silently lost in the descriptor
+                if (!FIELD_ATTRIBUTES.contains(attr)) {
+                    throw new IllegalArgumentException("isofield " + e.getAttribute("id") + ": attribute '" + attr
+                            + "' is not supported by the descriptor (only " + FIELD_ATTRIBUTES + ")");
+                }
+            }
+            maxField = Math.max(maxField, Integer.parseInt(e.getAttribute("id")));
+        }
+        DataOutputStream d = new DataOutputStream(out);
+        d.writeInt(MAGIC);
+        d.writeShort(VERSION);
+        d.writeLong(checksum(xml));
+        d.writeShort(maxField);
+        d.writeShort(fields.getLength());
+        for (int i = 0; i < fields.getLength(); i++) {
+            Element e = (Element) fields.item(i);
+            d.writeShort(Integer.parseInt(e.getAttribute("id")));
+            d.writeUTF(e.getAttribute("class"));
+            d.writeInt(Integer.parseInt(e.getAttribute("length")));
+            d.writeUTF(e.getAttribute("name"));
+            d.writeBoolean("true".equalsIgnoreCase(e.getAttribute("pad")));
+        }
+        d.flush();
+    }
+
+    /**
+     * Instantiates the field packagers the same way GenericPackager does (no-arg constructor,
+     * then description, length and pad).
+     *
+     * @return field packagers indexed by field number, or null when the descriptor was built from different XML
+     */
+    public static ISOFieldPackager[] read(InputStream in, long expectedChecksum) throws Exception {
+        DataInputStream d = new DataInputStream(in);
+        if (d.readInt() != MAGIC || d.readShort() != VERSION) {
+            throw new IOException("Not a packager descriptor (or unsupported version)");
+        }
+        if (d.readLong() != expectedChecksum) return null;
+        ISOFieldPackager[] fld = new ISOFieldPackager[d.readShort() + 1];
+        int count = d.readShort();
+        for (int i = 0; i < count; i++) {
+            int id = d.readShort();
+            ISOFieldPackager fp = (ISOFieldPackager) Class.forName(d.readUTF()).getDeclaredConstructor().newInstance();
+            fp.setLength(d.readInt());
+            fp.setDescription(d.readUTF());
+            fp.setPad(d.readBoolean());
+            fld[id] = fp;
+        }
+        return fld;
+    }
+
+    /**
+     * Build-time entry point: {@code PackagerDescriptor <packager.xml> <descriptor.bin>}.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("usage: PackagerDescriptor <packager.xml> <descriptor.bin>");
+            System.exit(2);
+        }
+        Path target = Paths.get(args[1]);
+        try (OutputStream out = Files.newOutputStream(target)) {
+            write(Files.readAllBytes(Paths.get(args[0])), out);
+        }
+        System.out.println("Wrote packager descriptor " + target);
+    }
+}
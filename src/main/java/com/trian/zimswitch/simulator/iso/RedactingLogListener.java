@@ -0,0 +1,41 @@
+package com.trian.zimswitch.simulator.iso;
+
+import org.jpos.iso.ISOMsg;
+import org.jpos.util.LogEvent;
+import org.jpos.util.LogListener;
+
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * jPOS log listener that masks sensitive fields before any later listener (SimpleLogListener)
+ * sees the event: ISOMsg payloads are replaced by a {@link FieldRedactor#redactedCopy}, and the raw
+ * images and per-field values a packager logs on pack/unpack are dropped.
+ */
+public class RedactingLogListener implements LogListener {
+    private final FieldRedactor redactor;
+
+    public RedactingLogListener(FieldRedactor redactor) {
+        this.redactor = redactor;
+    }
+
+    @Override
+    public LogEvent log(LogEvent ev) {
+        List<Object> payload = ev.getPayLoad();
+        if (payload == null) return ev;
+        boolean packager = "pack".equals(ev.getTag()) || "unpack".equals(ev.getTag());
+        synchronized (payload) {
+            for (ListIterator<Object> it = payload.listIterator(); it.hasNext(); ) {
+                Object o = it.next();
+                if (o instanceof ISOMsg m) {
+                    it.set(redactor.redactedCopy(m));
+                } else if (o instanceof byte[] b) {
+                    it.set("[" + b.length + " bytes]");
+                } else if (packager && !(o instanceof Throwable)) {
+                    it.set("[redacted]");
+                }
+            }
+        }
+        return ev;
+    }
+}
@@ -0,0 +1,57 @@
+package com.trian.zimswitch.simulator.loadgen;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency histograms per MTI and response code, in microseconds.
+ * Each outcome records two values: latency measured from the intended (scheduled) send time,
+ * which corrects for coordinated omission, and service time measured from the actual send.
+ */
+public class LatencyRecorder {
+
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Entry>> byMti = new ConcurrentHashMap<>();
+
+    public void record(String mti, String rc, long intendedNanos, long sentNanos, long doneNanos) {
+        Entry e = byMti.computeIfAbsent(mti, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(rc, k -> new Entry());
+        e.latency.recordValue(Math.max(0, (doneNanos - intendedNanos) / 1000));
+        e.service.recordValue(Math.max(0, (doneNanos - sentNanos) / 1000));
+    }
+
+    public Map<String, Object> report() {
+        Map<String, Object> out = new TreeMap<>();
+        byMti.forEach((mti, byRc) -> {
+            Map<String, Object> rcs = new TreeMap<>();
+            byRc.forEach((rc, e) -> {
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("count", e.latency.getTotalCount());
+                m.put("latencyMs", percentiles(e.latency));
+                m.put("serviceTimeMs", percentiles(e.service));
+                rcs.put(rc, m);
+            });
+            out.put(mti, rcs);
+        });
+        return out;
+    }
+
+    private static Map<String, Object> percentiles(Histogram h) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("p50", h.getValueAtPercentile(50.0) / 1000.0);
+        m.put("p99", h.getValueAtPercentile(99.0) / 1000.0);
+        m.put("p99.9", h.getValueAtPercentile(99.9) / 1000.0);
+        m.put("max", h.getMaxValue() / 1000.0);
+        return m;
+    }
+
+    private static final class Entry {
+        // Auto-resizing, 3 significant digits
+        final Histogram latency = new ConcurrentHistogram(3);
+        final Histogram service = new ConcurrentHistogram(3);
+    }
+}
@@ -0,0 +1,214 @@
+package com.trian.zimswitch.simulator.loadgen;
+
+import com.trian.zimswitch.simulator.client.IsoChannelPool;
+import com.trian.zimswitch.simulator.iso.IsoMessageBuilder;
+import com.trian.zimswitch.simulator.iso.MessageTemplate;
+import org.jpos.iso.ISOMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Constant-arrival-rate (open model) load generator.
+ * A single pacer thread fires requests at their scheduled instants through the channel pool
+ * without waiting for responses, so a slow gateway shows up as growing latency instead of
+ * a silently reduced send rate. Latency is measured from the scheduled instant.
+ */
+@Component
+public class LoadGenerator {
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final IsoChannelPool pool;
+    private final IsoMessageBuilder builder;
+    private volatile Run current;
+
+    public LoadGenerator(IsoChannelPool pool, IsoMessageBuilder builder) {
+        this.pool = pool;
+        this.builder = builder;
+    }
+
+    public synchronized void start(LoadProfile profile) {
+        if (current != null && current.isRunning()) {
+            throw new IllegalStateException("A load run is already in progress");
+        }
+        validate(profile);
+        current = new Run(profile);
+        current.thread.start();
+        log.info("Load run started: target {} TPS, ramp-up {}s, steady {}s, ramp-down {}s, mix {}",
+                profile.getTargetTps(), profile.getRampUpSeconds(), profile.getSteadySeconds(),
+                profile.getRampDownSeconds(), profile.getMix());
+    }
+
+    /**
+     * Rejects profiles the pacer cannot schedule: a non-positive or infinite rate would stall or
+     * overrun the arrival clock, and a negative phase would end the run before it starts.
+     */
+    private static void validate(LoadProfile profile) {
+        double target = profile.getTargetTps();
+        if (!(target > 0) || Double.isInfinite(target)) {
+            throw new IllegalArgumentException("targetTps must be a positive number, got " + target);
+        }
+        double start = profile.getStartTps();
+        if (!(start >= 0) || Double.isInfinite(start)) {
+            throw new IllegalArgumentException("startTps must be zero or more, got " + start);
+        }
+        if (profile.getRampUpSeconds() < 0 || profile.getSteadySeconds() < 0 || profile.getRampDownSeconds() < 0) {
+            throw new IllegalArgumentException("Phase durations must be zero or more");
+        }
+        if (profile.getMix() == null || profile.getMix().isEmpty()) {
+            throw new IllegalArgumentException("Load profile mix must contain at least one MTI");
+        }
+        profile.getMix().forEach((mti, weight) -> {
+            if (weight == null || weight <= 0) {
+                throw new IllegalArgumentException("Mix weight for " + mti + " must be positive, got " + weight);
+            }
+        });
+    }
+
+    public void stop() {
+        Run run = current;
+        if (run != null) run.stopped = true;
+    }
+
+    public Map<String, Object> report() {
+        Run run = current;
+        Map<String, Object> out = new LinkedHashMap<>();
+        if (run == null) {
+            out.put("running", false);
+            return out;
+        }
+        long elapsed = System.nanoTime() - run.startNanos;
+        if (!run.isRunning()) elapsed = run.endNanos - run.startNanos;
+        out.put("running", run.isRunning());
+        out.put("phase", run.isRunning() ? run.profile.phaseAt(elapsed) : "DONE");
+        out.put("elapsedSeconds", elapsed / 1e9);
+        out.put("targetTps", run.profile.getTargetTps());
+        out.put("scheduled", run.scheduled.get());
+        out.put("completed", run.completed.get());
+        out.put("failed", run.failed.get());
+        out.put("achievedTps", elapsed > 0 ? run.completed.get() / (elapsed / 1e9) : 0.0);
+        out.put("inFlight", pool.getInFlight());
+        out.put("results", run.recorder.report());
+        return out;
+    }
+
+    private final class Run {
+        final LoadProfile profile;
+        final LatencyRecorder recorder = new LatencyRecorder();
+        final AtomicLong scheduled = new AtomicLong();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final String[] mtis;
+        final int[] cumulativeWeights;
+        // Financial templates prepared once per run from the profile overrides
+        final MessageTemplate template1200;
+        final MessageTemplate template1400;
+        final Thread thread;
+        volatile boolean stopped;
+        volatile long startNanos;
+        volatile long endNanos;
+
+        Run(LoadProfile profile) {
+            this.profile = profile;
+            this.mtis = new String[profile.getMix().size()];
+            this.cumulativeWeights = new int[mtis.length];
+            int i = 0, sum = 0;
+            for (Map.Entry<String, Integer> e : profile.getMix().entrySet()) {
+                sum += Math.max(0, e.getValue());
+                mtis[i] = e.getKey();
+                cumulativeWeights[i++] = sum;
+            }
+            if (sum <= 0) throw new IllegalArgumentException("Load profile mix weights must be positive");
+            this.template1200 = builder.template("1200", profile.getOverrides());
+            this.template1400 = builder.template("1400", profile.getOverrides());
+            this.startNanos = System.nanoTime();
+            this.thread = new Thread(this::pace, "loadgen-pacer");
+            this.thread.setDaemon(true);
+        }
+
+        boolean isRunning() {
+            return endNanos == 0;
+        }
+
+        private void pace() {
+            long total = profile.totalNanos();
+            startNanos = System.nanoTime();
+            long next = startNanos;
+            try {
+                while (!stopped && next - startNanos < total) {
+                    long now;
+                    while ((now = System.nanoTime()) < next) {
+                        LockSupport.parkNanos(next - now);
+                        if (stopped) return;
+                    }
+                    fire(next);
+                    next += (long) (1_000_000_000L / profile.rateAt(next - startNanos));
+                }
+            } finally {
+                endNanos = System.nanoTime();
+                log.info("Load run finished: {} scheduled, {} completed, {} failed",
+                        scheduled.get(), completed.get(), failed.get());
+            }
+        }
+
+        private void fire(long intendedNanos) {
+            scheduled.incrementAndGet();
+            String mti = pickMti();
+            ISOMsg req;
+            try {
+                req = build(mti);
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                recorder.record(mti, "BUILD_ERROR", intendedNanos, intendedNanos, System.nanoTime());
+                return;
+            }
+            long sentNanos = System.nanoTime();
+            pool.send(req).whenComplete((resp, err) -> {
+                long done = System.nanoTime();
+                if (err == null) completed.incrementAndGet(); else failed.incrementAndGet();
+                recorder.record(mti, outcome(resp, err), intendedNanos, sentNanos, done);
+            });
+        }
+
+        private String pickMti() {
+            int r = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (r < cumulativeWeights[i]) return mtis[i];
+            }
+            return mtis[mtis.length - 1];
+        }
+
+        private ISOMsg build(String mti) throws Exception {
+            switch (mti) {
+                case "1200":
+                    return template1200.newMessage(profile.getOverrides());
+                case "1400":
+                    return template1400.newMessage(profile.getOverrides());
+                default:
+                    Map<String, String> o = new HashMap<>(profile.getOverrides());
+                    o.put("mti", mti);
+                    return builder.buildEcho(o);
+            }
+        }
+    }
+
+    private static String outcome(ISOMsg resp, Throwable err) {
+        if (err != null) {
+            Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+            if (cause instanceof TimeoutException) return "TIMEOUT";
+            if (cause instanceof RejectedExecutionException) return "REJECTED";
+            return "ERROR";
+        }
+        return resp.hasField(39) ? resp.getString(39) : "NO_RC";
+    }
+}
@@ -0,0 +1,78 @@
+package com.trian.zimswitch.simulator.loadgen;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Open-model load profile: a target arrival rate reached through a linear ramp-up,
+ * held for the steady phase and brought back down through a linear ramp-down.
+ * Example JSON:
+ * {"targetTps":500, "rampUpSeconds":10, "steadySeconds":60, "rampDownSeconds":5,
+ *  "mix":{"1200":90, "1400":5, "0800":5}, "overrides":{"4":"000000002500"}}
+ */
+public class LoadProfile {
+    private double targetTps = 10;
+    // Rate at the start of ramp-up / end of ramp-down so inter-arrival gaps stay finite
+    private double startTps = 1;
+    private int rampUpSeconds = 0;
+    private int steadySeconds = 60;
+    private int rampDownSeconds = 0;
+    // Relative weights per MTI; supported keys are 1200, 1400 and 0800 (or 1804 for echo)
+    private Map<String, Integer> mix = new LinkedHashMap<>(Map.of("1200", 100));
+    // Field overrides applied to every generated message
+    private Map<String, String> overrides = new HashMap<>();
+
+    public double getTargetTps() { return targetTps; }
+    public void setTargetTps(double targetTps) { this.targetTps = targetTps; }
+
+    public double getStartTps() { return startTps; }
+    public void setStartTps(double startTps) { this.startTps = startTps; }
+
+    public int getRampUpSeconds() { return rampUpSeconds; }
+    public void setRampUpSeconds(int rampUpSeconds) { this.rampUpSeconds = rampUpSeconds; }
+
+    public int getSteadySeconds() { return steadySeconds; }
+    public void setSteadySeconds(int steadySeconds) { this.steadySeconds = steadySeconds; }
+
+    public int getRampDownSeconds() { return rampDownSeconds; }
+    public void setRampDownSeconds(int rampDownSeconds) { this.rampDownSeconds = rampDownSeconds; }
+
+    public Map<String, Integer> getMix() { return mix; }
+    public void setMix(Map<String, Integer> mix) { this.mix = mix; }
+
+    public Map<String, String> getOverrides() { return overrides; }
+    public void setOverrides(Map<String, String> overrides) { this.overrides = overrides != null ? overrides : new HashMap<>(); }
+
+    long totalNanos() {
+        return (long) (rampUpSeconds + steadySeconds + rampDownSeconds) * 1_000_000_000L;
+    }
+
+    /**
+     * Scheduled arrival rate (per second) at the given offset from the start of the run.
+     */
+    double rateAt(long elapsedNanos) {
+        double t = elapsedNanos / 1e9;
+        double start = Math.max(0.1, Math.min(startTps, targetTps));
+        if (t < rampUpSeconds) {
+            return start + (targetTps - start) * (t / rampUpSeconds);
+        }
+        t -= rampUpSeconds;
+        if (t < steadySeconds) {
+            return targetTps;
+        }
+        t -= steadySeconds;
+        if (t < rampDownSeconds) {
+            return targetTps - (targetTps - start) * (t / rampDownSeconds);
+        }
+        return start;
+    }
+
+    String phaseAt(long elapsedNanos) {
+        double t = elapsedNanos / 1e9;
+        if (t < rampUpSeconds) return "RAMP_UP";
+        if (t < rampUpSeconds + steadySeconds) return "STEADY";
+        if (t < rampUpSeconds + steadySeconds + rampDownSeconds) return "RAMP_DOWN";
+        return "DONE";
+    }
+}
@@ -0,0 +1,123 @@
+package com.trian.zimswitch.simulator.metrics;
+
+import com.trian.zimswitch.simulator.client.IsoChannelPool;
+import com.trian.zimswitch.simulator.client.MultiplexedIsoClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.jpos.iso.ISOMsg;
+import org.springframework.stereotype.Component;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Micrometer meters for the gateway client and ISO codec (exported by Actuator, e.g. /actuator/prometheus).
+ * Meters are created once per tag value and cached, so the hot path is a map lookup plus the record call.
+ * Acceptor meters live in {@link com.trian.zimswitch.simulator.server.SessionStats}.
+ */
+@Component
+public class IsoMetrics {
+
+    /**
+     * Histogram buckets for latency timers, chosen around typical switch SLOs.
+     */
+    public static final Duration[] SLO = {
+            Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(25), Duration.ofMillis(50),
+            Duration.ofMillis(100), Duration.ofMillis(250), Duration.ofMillis(500),
+            Duration.ofSeconds(1), Duration.ofSeconds(2), Duration.ofSeconds(5)
+    };
+
+    private final MeterRegistry registry;
+    private final ConcurrentHashMap<String, Timer> latencyByMti = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Counter>> responses = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Counter>> errors = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counter> connects = new ConcurrentHashMap<>();
+    private final Timer acceptorPack;
+    private final Timer acceptorUnpack;
+
+    public IsoMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.acceptorPack = codecTimer("zimswitch.iso.pack", "acceptor");
+        this.acceptorUnpack = codecTimer("zimswitch.iso.unpack", "acceptor");
+    }
+
+    /**
+     * Outcome of one gateway request: latency and response code on success, error type otherwise.
+     */
+    public void clientCompleted(ISOMsg request, ISOMsg response, Throwable error, long nanos) {
+        String mti = request.hasField(0) ? request.getString(0) : "none";
+        if (error != null) {
+            counter(errors, "zimswitch.client.errors", mti, "type", errorType(error)).increment();
+            return;
+        }
+        latencyByMti.computeIfAbsent(mti, k -> Timer.builder("zimswitch.client.latency")
+                .description("Gateway send to receive time")
+                .tag("mti", k)
+                .serviceLevelObjectives(SLO)
+                .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+        String rc = response.hasField(39) ? response.getString(39) : "none";
+        counter(responses, "zimswitch.client.responses", mti, "rc", rc).increment();
+    }
+
+    /**
+     * Connect of a channel that is not a pool member (the synchronous channel).
+     */
+    public void connected(String channel) {
+        connects.computeIfAbsent(channel, k -> Counter.builder("zimswitch.client.connects")
+                .tag("channel", k)
+                .register(registry)).increment();
+    }
+
+    /**
+     * In-flight, connection state, connect and unmatched-response meters for every pool member.
+     */
+    public void bindPool(IsoChannelPool pool) {
+        for (MultiplexedIsoClient c : pool.getMembers()) {
+            Gauge.builder("zimswitch.client.inflight", c, MultiplexedIsoClient::getInFlight)
+                    .tag("channel", c.getName()).register(registry);
+            Gauge.builder("zimswitch.client.connected", c, x -> x.isConnected() ? 1 : 0)
+                    .tag("channel", c.getName()).register(registry);
+            FunctionCounter.builder("zimswitch.client.connects", c, MultiplexedIsoClient::getConnects)
+                    .tag("channel", c.getName()).register(registry);
+            FunctionCounter.builder("zimswitch.client.unmatched", c, MultiplexedIsoClient::getUnmatched)
+                    .tag("channel", c.getName()).register(registry);
+        }
+    }
+
+    public void acceptorPacked(long nanos) {
+        acceptorPack.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void acceptorUnpacked(long nanos) {
+        acceptorUnpack.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer codecTimer(String name, String side) {
+        return Timer.builder(name)
+                .tag("side", side)
+                .serviceLevelObjectives(Duration.ofNanos(10_000), Duration.ofNanos(50_000), Duration.ofNanos(100_000),
+                        Duration.ofNanos(500_000), Duration.ofMillis(1), Duration.ofMillis(5))
+                .register(registry);
+    }
+
+    private Counter counter(ConcurrentHashMap<String, ConcurrentHashMap<String, Counter>> cache, String name,
+                            String mti, String tag, String value) {
+        return cache.computeIfAbsent(mti, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(value, v -> Counter.builder(name).tag("mti", mti).tag(tag, v).register(registry));
+    }
+
+    private static String errorType(Throwable err) {
+        Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+        if (cause instanceof TimeoutException || cause instanceof SocketTimeoutException) return "timeout";
+        if (cause instanceof RejectedExecutionException) return "rejected";
+        return "error";
+    }
+}
@@ -0,0 +1,277 @@
+package com.trian.zimswitch.simulator.reversal;
+
+import com.trian.zimswitch.simulator.client.IsoChannelPool;
+import com.trian.zimswitch.simulator.client.NotSentException;
+import com.trian.zimswitch.simulator.util.IsoClock;
+import com.trian.zimswitch.simulator.util.StanGenerator;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOPackager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Store-and-forward reversals for financial requests that got no response.
+ * {@link #timedOut} journals a 1420 for the original 1200; a forwarder thread drains due entries in
+ * batches through the channel pool. Every send is journaled first, so anything sent before (even
+ * before a restart) goes out again as a 1421 repeat; a send the pool refused before writing it
+ * (window full, nothing connected) is not counted as an attempt. Entries without a final answer
+ * (timeout, connection error, RC 91/96) are retried with exponential backoff.
+ */
+@Component
+public class ReversalForwarder implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(ReversalForwarder.class);
+
+    // Issuer/switch unavailable: not a final answer to a reversal
+    private static final Set<String> RETRY_CODES = Set.of("91", "96");
+    // Copied from the original request
+    private static final int[] COPIED_FIELDS = {2, 3, 4, 12, 13, 37, 41, 42, 49};
+
+    private final IsoChannelPool pool;
+    private final ISOPackager packager;
+
+    @Value("${reversal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${reversal.journal.dir:reversals}")
+    private String dir;
+
+    @Value("${reversal.journal.segment-size-mb:16}")
+    private int segmentSizeMb;
+
+    @Value("${reversal.journal.force:false}")
+    private boolean force;
+
+    @Value("${reversal.forward.batch-size:50}")
+    private int batchSize;
+
+    @Value("${reversal.forward.initial-backoff-ms:1000}")
+    private long initialBackoffMs;
+
+    @Value("${reversal.forward.max-backoff-ms:60000}")
+    private long maxBackoffMs;
+
+    // 0 = retry until answered
+    @Value("${reversal.forward.max-attempts:0}")
+    private int maxAttempts;
+
+    private final DelayQueue<Pending> queue = new DelayQueue<>();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong repeats = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong gaveUp = new AtomicLong();
+    private volatile ReversalJournal journal;
+    private volatile boolean running;
+    private Thread forwarder;
+    private int recovered;
+
+    public ReversalForwarder(IsoChannelPool pool, ISOPackager packager) {
+        this.pool = pool;
+        this.packager = packager;
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) return;
+        try {
+            journal = new ReversalJournal(Paths.get(dir), Math.max(1, segmentSizeMb) * 1024 * 1024, force);
+        } catch (IOException e) {
+            log.warn("Reversal journal in {} unavailable, automatic reversals disabled: {}", dir, e.getMessage());
+            return;
+        }
+        for (ReversalJournal.Entry e : journal.recovered()) queue.add(new Pending(e, 0));
+        recovered = journal.recovered().size();
+        running = true;
+        forwarder = new Thread(this::forward, "reversal-forwarder");
+        forwarder.setDaemon(true);
+        forwarder.start();
+        log.info("Reversal forwarder started ({} recovered, batch {}, backoff {}..{} ms)",
+                recovered, batchSize, initialBackoffMs, maxBackoffMs);
+    }
+
+    /**
+     * Journals a reversal for a financial request that was sent but not answered.
+     * Other MTIs are ignored.
+     */
+    public void timedOut(ISOMsg original) {
+        ReversalJournal j = journal;
+        if (j == null) return;
+        try {
+            if (!"1200".equals(original.getMTI())) return;
+            ISOMsg rev = new ISOMsg();
+            rev.setPackager(packager);
+            rev.setMTI("1420");
+            for (int f : COPIED_FIELDS) {
+                if (original.hasField(f)) rev.set(f, original.getString(f));
+            }
+            rev.set(7, IsoClock.now().transmission);
+            rev.set(11, StanGenerator.nextStan());
+            // Original data elements: MTI, STAN, transmission date/time
+            rev.set(56, original.getMTI() + original.getString(11) + original.getString(7));
+            queue.add(new Pending(j.enqueue(packager.pack(rev)), 0));
+            enqueued.incrementAndGet();
+        } catch (Exception e) {
+            log.warn("Could not journal reversal for STAN {}: {}", original.getString(11), e.getMessage());
+        }
+    }
+
+    private void forward() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            List<CompletableFuture<ISOMsg>> futures = new ArrayList<>(batch.size());
+            for (Pending p : batch) futures.add(send(p.entry));
+            for (int i = 0; i < batch.size(); i++) {
+                completed(batch.get(i), futures.get(i));
+            }
+            batch.clear();
+        }
+    }
+
+    private CompletableFuture<ISOMsg> send(ReversalJournal.Entry e) {
+        try {
+            ISOMsg m = new ISOMsg();
+            m.setPackager(packager);
+            packager.unpack(m, e.message);
+            boolean repeat = e.getAttempts() > 0;
+            if (repeat) m.setMTI("1421");
+            // Journaled before it leaves, so a crash mid-send still makes the next one a repeat
+            journal.attempted(e);
+            CompletableFuture<ISOMsg> f = pool.send(m);
+            if (notSent(f)) {
+                // Refused before anything was written: the next try is still the original 1420
+                journal.notSent(e);
+                return f;
+            }
+            sent.incrementAndGet();
+            if (repeat) repeats.incrementAndGet();
+            return f;
+        } catch (Exception ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    private static boolean notSent(CompletableFuture<ISOMsg> f) {
+        if (!f.isCompletedExceptionally()) return false;
+        try {
+            f.join();
+            return false;
+        } catch (CompletionException ex) {
+            return ex.getCause() instanceof NotSentException;
+        }
+    }
+
+    private void completed(Pending p, CompletableFuture<ISOMsg> f) {
+        String rc;
+        try {
+            ISOMsg resp = f.join();
+            rc = resp.hasField(39) ? resp.getString(39) : null;
+        } catch (CompletionException ex) {
+            log.debug("Reversal {} attempt {} failed: {}", p.entry.id, p.entry.getAttempts(), ex.getCause().getMessage());
+            rc = null;
+        }
+        try {
+            if (rc != null && !RETRY_CODES.contains(rc)) {
+                journal.done(p.entry, rc);
+                completed.incrementAndGet();
+            } else if (maxAttempts > 0 && p.entry.getAttempts() >= maxAttempts) {
+                journal.done(p.entry, "XX");
+                gaveUp.incrementAndGet();
+                log.warn("Giving up on reversal {} after {} attempts", p.entry.id, p.entry.getAttempts());
+            } else {
+                long backoff = Math.min(maxBackoffMs, initialBackoffMs << Math.min(20, Math.max(0, p.entry.getAttempts() - 1)));
+                queue.add(new Pending(p.entry, backoff));
+                retried.incrementAndGet();
+            }
+        } catch (IOException ex) {
+            log.warn("Reversal journal write failed for {}: {}", p.entry.id, ex.getMessage());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", journal != null);
+        m.put("recovered", recovered);
+        m.put("enqueued", enqueued.get());
+        m.put("queued", queue.size());
+        m.put("sent", sent.get());
+        m.put("repeats", repeats.get());
+        m.put("completed", completed.get());
+        m.put("retried", retried.get());
+        m.put("gaveUp", gaveUp.get());
+        ReversalJournal j = journal;
+        if (j != null) m.put("journal", j.stats());
+        return m;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) return;
+        running = false;
+        // The forwarder uses the journal until it exits; a batch in flight ends within the request timeout
+        boolean interrupted = false;
+        while (forwarder.isAlive()) {
+            forwarder.interrupt();
+            try {
+                forwarder.join(5000);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+            if (forwarder.isAlive()) log.info("Waiting for the reversal forwarder to finish its batch");
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        // Open entries stay in the journal and are picked up on the next start
+        journal.close();
+        journal = null;
+        log.info("Reversal forwarder stopped ({} still queued)", queue.size());
+        queue.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private static final class Pending implements Delayed {
+        final ReversalJournal.Entry entry;
+        final long dueNanos;
+
+        Pending(ReversalJournal.Entry entry, long delayMs) {
+            this.entry = entry;
+            this.dueNanos = System.nanoTime() + delayMs * 1_000_000L;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(dueNanos, ((Pending) o).dueNanos);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.trian.zimswitch.simulator.reversal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Append-only, memory-mapped journal of pending reversals.
+ * <p>
+ * Segment layout: int magic "RVJL", short version, then records of
+ * <pre>
+ *   byte type, long id, int payloadLength, payload
+ * </pre>
+ * ENQUEUED carries the packed reversal, ATTEMPTED marks a send (so the entry goes out as a repeat
+ * after a restart) and DONE carries the final response code. A type of 0 ends the segment.
+ * Entries are replayed from all segments on open; a segment is deleted once it and every older
+ * segment hold no open entries, so ATTEMPTED records of open entries are never lost.
+ */
+public class ReversalJournal implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ReversalJournal.class);
+
+    static final int MAGIC = 0x52564A4C; // "RVJL"
+    static final short VERSION = 1;
+    static final byte END = 0, ENQUEUED = 1, ATTEMPTED = 2, DONE = 3;
+    private static final int RECORD_OVERHEAD = 1 + 8 + 4;
+    private static final int SEGMENT_HEADER = 4 + 2;
+    private static final String SUFFIX = ".rvj";
+
+    /**
+     * An open reversal: the packed 1420 and how often it has been sent.
+     */
+    public static final class Entry {
+        public final long id;
+        public final byte[] message;
+        final int segment;
+        int attempts;
+
+        Entry(long id, byte[] message, int segment) {
+            this.id = id;
+            this.message = message;
+            this.segment = segment;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+    }
+
+    private final Path dir;
+    private final int segmentSize;
+    private final boolean force;
+    // Open entries per segment index, oldest segment first
+    private final TreeMap<Integer, Integer> openPerSegment = new TreeMap<>();
+    private final List<Entry> recovered;
+    private long nextId = 1;
+    private int segmentIndex;
+    // Lowest segment index that may still exist on disk
+    private int oldestSegment = Integer.MAX_VALUE;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+
+    /**
+     * Opens the journal in dir, replaying existing segments; new records go to a fresh segment.
+     *
+     * @param force flush every record to disk (survives power loss, costs a sync per record)
+     */
+    public ReversalJournal(Path dir, int segmentSize, boolean force) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.force = force;
+        Files.createDirectories(dir);
+        this.recovered = replay();
+        roll(0);
+        deleteDrainedSegments();
+    }
+
+    /**
+     * Entries still open when the journal was opened, oldest first.
+     */
+    public List<Entry> recovered() {
+        return recovered;
+    }
+
+    public synchronized Entry enqueue(byte[] message) throws IOException {
+        long id = nextId++;
+        append(ENQUEUED, id, message);
+        // Counted against the segment the record landed in (append may have rolled)
+        Entry e = new Entry(id, message, segmentIndex);
+        openPerSegment.merge(e.segment, 1, Integer::sum);
+        return e;
+    }
+
+    public synchronized void attempted(Entry e) throws IOException {
+        e.attempts++;
+        append(ATTEMPTED, e.id, new byte[0]);
+    }
+
+    /**
+     * Takes back an attempt that was journaled but never written to the switch. The record stays
+     * on disk, so after a crash the entry still goes out as a repeat, which is the safe side.
+     */
+    public synchronized void notSent(Entry e) {
+        if (e.attempts > 0) e.attempts--;
+    }
+
+    public synchronized void done(Entry e, String responseCode) throws IOException {
+        append(DONE, e.id, responseCode.getBytes(StandardCharsets.US_ASCII));
+        openPerSegment.computeIfPresent(e.segment, (k, v) -> v > 1 ? v - 1 : null);
+        deleteDrainedSegments();
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("dir", dir.toAbsolutePath().toString());
+        m.put("segment", segmentIndex);
+        m.put("open", openPerSegment.values().stream().mapToInt(Integer::intValue).sum());
+        m.put("segmentsWithOpenEntries", openPerSegment.size());
+        return m;
+    }
+
+    private void append(byte type, long id, byte[] payload) throws IOException {
+        if (segment == null) throw new IOException("Reversal journal is closed");
+        if (segment.remaining() < RECORD_OVERHEAD + payload.length + 1) {
+            roll(payload.length);
+        }
+        segment.put(type).putLong(id).putInt(payload.length).put(payload);
+        // Keep an end marker after the last record so a segment is readable even if we crash
+        segment.put(segment.position(), END);
+        if (force) segment.force();
+    }
+
+    private void roll(int payloadLength) throws IOException {
+        closeSegment();
+        segmentIndex++;
+        oldestSegment = Math.min(oldestSegment, segmentIndex);
+        Path path = segmentPath(segmentIndex);
+        int size = Math.max(segmentSize, SEGMENT_HEADER + RECORD_OVERHEAD + payloadLength + 1);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segment.putInt(MAGIC).putShort(VERSION);
+        segment.put(segment.position(), END);
+    }
+
+    /**
+     * Deletes the oldest segments while they have no open entries (never the active one).
+     */
+    private void deleteDrainedSegments() {
+        int oldestOpen = openPerSegment.isEmpty() ? segmentIndex : openPerSegment.firstKey();
+        for (; oldestSegment < oldestOpen; oldestSegment++) {
+            try {
+                Files.deleteIfExists(segmentPath(oldestSegment));
+            } catch (IOException ex) {
+                log.warn("Could not delete drained journal segment {}: {}", oldestSegment, ex.getMessage());
+            }
+        }
+    }
+
+    private List<Entry> replay() throws IOException {
+        Map<Long, Entry> open = new LinkedHashMap<>();
+        List<Path> files;
+        try (Stream<Path> s = Files.list(dir)) {
+            files = s.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+        for (Path p : files) {
+            int index = indexOf(p);
+            if (index == Integer.MAX_VALUE) continue;
+            segmentIndex = Math.max(segmentIndex, index);
+            oldestSegment = Math.min(oldestSegment, index);
+            try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                if (buf.remaining() < SEGMENT_HEADER || buf.getInt() != MAGIC || buf.getShort() != VERSION) {
+                    log.warn("Skipping {}: not a reversal journal segment", p);
+                    continue;
+                }
+                while (buf.remaining() >= RECORD_OVERHEAD) {
+                    byte type = buf.get();
+                    if (type == END) break;
+                    long id = buf.getLong();
+                    int len = buf.getInt();
+                    if (len < 0 || len > buf.remaining()) {
+                        log.warn("Truncated record in {}, stopping replay of this segment", p);
+                        break;
+                    }
+                    byte[] payload = new byte[len];
+                    buf.get(payload);
+                    nextId = Math.max(nextId, id + 1);
+                    if (type == ENQUEUED) {
+                        open.put(id, new Entry(id, payload, index));
+                    } else if (type == ATTEMPTED) {
+                        Entry e = open.get(id);
+                        if (e != null) e.attempts++;
+                    } else if (type == DONE) {
+                        open.remove(id);
+                    }
+                }
+            }
+        }
+        List<Entry> out = new ArrayList<>(open.values());
+        for (Entry e : out) openPerSegment.merge(e.segment, 1, Integer::sum);
+        if (!files.isEmpty()) {
+            log.info("Reversal journal {}: {} segments replayed, {} open reversals", dir.toAbsolutePath(), files.size(), out.size());
+        }
+        return out;
+    }
+
+    private Path segmentPath(int index) {
+        return dir.resolve(String.format("reversals-%08d%s", index, SUFFIX));
+    }
+
+    private static int indexOf(Path p) {
+        String n = p.getFileName().toString();
+        try {
+            return Integer.parseInt(n.substring(n.indexOf('-') + 1, n.length() - SUFFIX.length()));
+        } catch (RuntimeException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    private void closeSegment() {
+        if (segment == null) return;
+        try {
+            segment.force();
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Closing journal segment {}: {}", segmentIndex, e.getMessage());
+        }
+        segment = null;
+        channel = null;
+    }
+
+    @Override
+    public synchronized void close() {
+        closeSegment();
+    }
+}
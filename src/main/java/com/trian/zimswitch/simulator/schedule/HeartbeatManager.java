@@ -0,0 +1,168 @@
+package com.trian.zimswitch.simulator.schedule;
+
+import com.trian.zimswitch.simulator.client.IsoChannelPool;
+import com.trian.zimswitch.simulator.client.MultiplexedIsoClient;
+import com.trian.zimswitch.simulator.iso.IsoMessageBuilder;
+import com.trian.zimswitch.simulator.service.ZimSwitchClientService;
+import com.trian.zimswitch.simulator.util.SessionThreads;
+import org.jpos.iso.ISOMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-connection network-management echoes, sent only after a connection has been idle for
+ * heartbeat.idle-ms. Pool members get their echo pipelined on that connection, so in-flight and
+ * new requests never wait behind it; the locked channel (gateway.async.enabled=false) gets it from
+ * the service's dispatcher thread, and only while idle. After heartbeat.max-missed consecutive
+ * failed echoes the connection is dropped and reopened before real traffic finds it dead.
+ */
+@Component
+public class HeartbeatManager implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(HeartbeatManager.class);
+
+    private static final String LOCKED_CHANNEL = "zimswitch-nac";
+
+    private final ZimSwitchClientService clientService;
+    private final IsoChannelPool pool;
+    private final IsoMessageBuilder builder;
+    private final Map<String, Beat> beats = new ConcurrentHashMap<>();
+    // Reconnects block on connect, so they stay off reader and timeout threads
+    private final ExecutorService reconnector = Executors.newSingleThreadExecutor(SessionThreads.daemonFactory("iso-heartbeat-reconnect-"));
+
+    @Value("${heartbeat.enabled:true}")
+    private boolean enabled;
+
+    @Value("${heartbeat.idle-ms:10000}")
+    private long idleMs;
+
+    // 0800 or 1804
+    @Value("${heartbeat.mti:0800}")
+    private String mti;
+
+    @Value("${heartbeat.max-missed:2}")
+    private int maxMissed;
+
+    public HeartbeatManager(ZimSwitchClientService clientService, IsoChannelPool pool, IsoMessageBuilder builder) {
+        this.clientService = clientService;
+        this.pool = pool;
+        this.builder = builder;
+    }
+
+    @Scheduled(initialDelayString = "${heartbeat.check-interval-ms:1000}", fixedDelayString = "${heartbeat.check-interval-ms:1000}")
+    public void check() {
+        if (!enabled) return;
+        long idleNanos = idleMs * 1_000_000L;
+        if (!clientService.isAsyncEnabled()) {
+            if (clientService.getChannelIdleNanos() >= idleNanos) {
+                Beat beat = beats.computeIfAbsent(LOCKED_CHANNEL, Beat::new);
+                if (beat.begin()) {
+                    beat.track(clientService.submitEcho(Map.of("mti", mti)).thenApply(HeartbeatManager::rc), clientService::reconnectChannel);
+                }
+            }
+            return;
+        }
+        for (MultiplexedIsoClient member : pool.getMembers()) {
+            if (!member.isConnected() || member.getIdleNanos() < idleNanos) continue;
+            Beat beat = beats.computeIfAbsent(member.getName(), Beat::new);
+            if (!beat.begin()) continue;
+            CompletableFuture<String> echo;
+            try {
+                ISOMsg req = builder.buildEcho(Map.of("mti", mti));
+                echo = member.send(req).thenApply(HeartbeatManager::rc);
+            } catch (Exception e) {
+                echo = CompletableFuture.failedFuture(e);
+            }
+            beat.track(echo, () -> {
+                try {
+                    member.reconnect("heartbeat missed");
+                } catch (Exception e) {
+                    // The pool's reconnect task keeps trying
+                    log.warn("{}: reconnect after missed heartbeats failed: {}", member.getName(), e.getMessage());
+                }
+            });
+        }
+    }
+
+    public List<Map<String, Object>> stats() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        beats.values().forEach(b -> out.add(b.stats()));
+        return out;
+    }
+
+    @Override
+    public void close() {
+        reconnector.shutdownNow();
+    }
+
+    private static String rc(ISOMsg resp) {
+        return resp.hasField(39) ? resp.getString(39) : null;
+    }
+
+    /**
+     * Heartbeat state of one connection; at most one echo outstanding.
+     */
+    private final class Beat {
+        final String name;
+        final AtomicInteger missed = new AtomicInteger();
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong answered = new AtomicLong();
+        final AtomicLong reconnects = new AtomicLong();
+        volatile boolean outstanding;
+        volatile String lastRc;
+
+        Beat(String name) {
+            this.name = name;
+        }
+
+        boolean begin() {
+            if (outstanding) return false;
+            outstanding = true;
+            sent.incrementAndGet();
+            return true;
+        }
+
+        void track(CompletableFuture<String> echo, Runnable reconnect) {
+            echo.whenComplete((rc, err) -> {
+                if (err == null) {
+                    answered.incrementAndGet();
+                    missed.set(0);
+                    lastRc = rc;
+                    log.debug("{}: heartbeat {} -> RC={}", name, mti, rc);
+                } else if (missed.incrementAndGet() >= maxMissed) {
+                    log.warn("{}: {} heartbeats missed (last: {}), reconnecting", name, missed.get(), err.getMessage());
+                    missed.set(0);
+                    reconnects.incrementAndGet();
+                    reconnector.execute(reconnect);
+                } else {
+                    log.info("{}: heartbeat missed ({}/{}): {}", name, missed.get(), maxMissed, err.getMessage());
+                }
+                outstanding = false;
+            });
+        }
+
+        Map<String, Object> stats() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("connection", name);
+            m.put("sent", sent.get());
+            m.put("answered", answered.get());
+            m.put("missed", missed.get());
+            m.put("reconnects", reconnects.get());
+            m.put("lastRc", lastRc);
+            return m;
+        }
+    }
+}
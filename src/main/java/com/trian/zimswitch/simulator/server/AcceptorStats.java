@@ -0,0 +1,35 @@
+package com.trian.zimswitch.simulator.server;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of {@link SessionStats} per acceptor ("jpos", "raw", "nio").
+ */
+@Component
+public class AcceptorStats {
+    private final ConcurrentHashMap<String, SessionStats> byAcceptor = new ConcurrentHashMap<>();
+    private final MeterRegistry registry;
+
+    public AcceptorStats(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public SessionStats get(String acceptor) {
+        return byAcceptor.computeIfAbsent(acceptor, k -> new SessionStats(k, registry));
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new TreeMap<>();
+        byAcceptor.forEach((k, v) -> out.put(k, v.toMap()));
+        return out;
+    }
+
+    public void reset() {
+        byAcceptor.values().forEach(SessionStats::reset);
+    }
+}
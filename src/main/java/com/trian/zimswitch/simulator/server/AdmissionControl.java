@@ -0,0 +1,178 @@
+package com.trian.zimswitch.simulator.server;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Overload protection for the acceptors, one {@link Gate} per acceptor ("jpos", "raw", "nio").
+ * A request is shed instead of queued when acceptor.admission.max-queued requests are already
+ * waiting for or in processing, when its connection is over acceptor.admission.rate-per-connection,
+ * or (raw/NIO, where requests wait for a worker) when it waited longer than latency-budget-ms.
+ * Shed requests are answered at once with reject-rc (queue full, rate limit) or budget-rc, without
+ * rules or injected delay, and counted by reason.
+ */
+@Component
+public class AdmissionControl {
+    private final ConcurrentHashMap<String, Gate> gates = new ConcurrentHashMap<>();
+    private final MeterRegistry registry;
+
+    // Requests waiting for or in processing per acceptor; 0 = unbounded
+    @Value("${acceptor.admission.max-queued:1000}")
+    private int maxQueued;
+
+    // Longest a request may wait for a worker before it is answered with budget-rc; 0 = no budget
+    @Value("${acceptor.admission.latency-budget-ms:0}")
+    private long latencyBudgetMs;
+
+    // Requests per second per connection; 0 = unlimited
+    @Value("${acceptor.admission.rate-per-connection:0}")
+    private double ratePerConnection;
+
+    // Token bucket size; 0 = one second's worth of rate-per-connection
+    @Value("${acceptor.admission.rate-burst:0}")
+    private int rateBurst;
+
+    // 91: issuer or switch inoperative
+    @Value("${acceptor.admission.reject-rc:91}")
+    private String rejectRc;
+
+    // 96: system malfunction
+    @Value("${acceptor.admission.budget-rc:96}")
+    private String budgetRc;
+
+    public AdmissionControl(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Gate get(String acceptor) {
+        return gates.computeIfAbsent(acceptor, Gate::new);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new TreeMap<>();
+        gates.forEach((k, v) -> out.put(k, v.toMap()));
+        return out;
+    }
+
+    public void reset() {
+        gates.values().forEach(Gate::reset);
+    }
+
+    /**
+     * Admission state of one acceptor.
+     */
+    public final class Gate {
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger peak = new AtomicInteger();
+        private final AtomicLong admitted = new AtomicLong();
+        private final AtomicLong queueFull = new AtomicLong();
+        private final AtomicLong rateLimited = new AtomicLong();
+        private final AtomicLong overBudget = new AtomicLong();
+        private final Counter shedQueueFull;
+        private final Counter shedRateLimited;
+        private final Counter shedOverBudget;
+
+        Gate(String listener) {
+            this.shedQueueFull = shed(listener, "queue-full");
+            this.shedRateLimited = shed(listener, "rate-limit");
+            this.shedOverBudget = shed(listener, "latency-budget");
+            Gauge.builder("zimswitch.acceptor.queued", queued, AtomicInteger::get)
+                    .description("Requests waiting for or in processing")
+                    .tag("listener", listener).register(registry);
+        }
+
+        private Counter shed(String listener, String reason) {
+            return Counter.builder("zimswitch.acceptor.shed")
+                    .description("Requests answered at once instead of queued")
+                    .tag("listener", listener).tag("reason", reason).register(registry);
+        }
+
+        /**
+         * Per-connection limiter, or null when rate-per-connection is off.
+         */
+        RateLimiter newRateLimiter() {
+            if (ratePerConnection <= 0) return null;
+            return new RateLimiter(ratePerConnection, rateBurst > 0 ? rateBurst : (int) Math.ceil(ratePerConnection));
+        }
+
+        /**
+         * Admits a request (to be released with {@link #done}) and returns null, or returns the
+         * response code to shed it with.
+         */
+        String admit(RateLimiter limiter, long nowNanos) {
+            if (limiter != null && !limiter.tryAcquire(nowNanos)) {
+                rateLimited.incrementAndGet();
+                shedRateLimited.increment();
+                return rejectRc;
+            }
+            int now = queued.incrementAndGet();
+            if (maxQueued > 0 && now > maxQueued) {
+                queued.decrementAndGet();
+                queueFull.incrementAndGet();
+                shedQueueFull.increment();
+                return rejectRc;
+            }
+            admitted.incrementAndGet();
+            peak.accumulateAndGet(now, Math::max);
+            return null;
+        }
+
+        /**
+         * Null if a request received at receivedNanos is still within the latency budget, else
+         * the response code to shed it with.
+         */
+        String checkBudget(long receivedNanos) {
+            if (latencyBudgetMs <= 0 || System.nanoTime() - receivedNanos <= latencyBudgetMs * 1_000_000L) return null;
+            overBudget.incrementAndGet();
+            shedOverBudget.increment();
+            return budgetRc;
+        }
+
+        /**
+         * An admitted request the worker queue had no room for: releases it and returns the
+         * response code to shed it with.
+         */
+        String overflow() {
+            queued.decrementAndGet();
+            queueFull.incrementAndGet();
+            shedQueueFull.increment();
+            return rejectRc;
+        }
+
+        void done() {
+            queued.decrementAndGet();
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("maxQueued", maxQueued);
+            m.put("latencyBudgetMs", latencyBudgetMs);
+            m.put("ratePerConnection", ratePerConnection);
+            m.put("queued", queued.get());
+            m.put("peakQueued", peak.get());
+            m.put("admitted", admitted.get());
+            m.put("shedQueueFull", queueFull.get());
+            m.put("shedRateLimited", rateLimited.get());
+            m.put("shedOverBudget", overBudget.get());
+            return m;
+        }
+
+        void reset() {
+            peak.set(queued.get());
+            admitted.set(0);
+            queueFull.set(0);
+            rateLimited.set(0);
+            overBudget.set(0);
+        }
+    }
+}
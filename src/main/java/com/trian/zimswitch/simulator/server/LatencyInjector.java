@@ -0,0 +1,152 @@
+package com.trian.zimswitch.simulator.server;
+
+import com.trian.zimswitch.simulator.util.HashedTimerWheel;
+import com.trian.zimswitch.simulator.util.SessionThreads;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delays acceptor responses without holding a thread: the prepared response is parked on a
+ * {@link HashedTimerWheel} and sent by a small dispatch pool when due.
+ * Delay per response is the matching rule's delayMs if set, otherwise drawn from
+ * acceptor.latency.mode: none, fixed, uniform (min..max) or lognormal (median, sigma, capped at max).
+ */
+@Component
+public class LatencyInjector implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(LatencyInjector.class);
+
+    private final String mode;
+    private final long fixedMs;
+    private final long minMs;
+    private final long maxMs;
+    private final double medianMs;
+    private final double sigma;
+    private final long tickNanos;
+    private final ExecutorService dispatcher;
+    // Started up front when the mode draws delays, else by the first rule delayMs; never with none and no delay rules
+    private volatile HashedTimerWheel wheel;
+
+    private final AtomicLong immediate = new AtomicLong();
+    private final AtomicLong delayed = new AtomicLong();
+    // Injected delay and how late the send actually ran, microseconds
+    private final Histogram injected = new ConcurrentHistogram(3);
+    private final Histogram lateness = new ConcurrentHistogram(3);
+
+    public LatencyInjector(@Value("${acceptor.latency.mode:none}") String mode,
+                           @Value("${acceptor.latency.fixed-ms:0}") long fixedMs,
+                           @Value("${acceptor.latency.min-ms:0}") long minMs,
+                           @Value("${acceptor.latency.max-ms:2000}") long maxMs,
+                           @Value("${acceptor.latency.median-ms:150}") double medianMs,
+                           @Value("${acceptor.latency.sigma:0.5}") double sigma,
+                           @Value("${acceptor.latency.tick-ms:1}") long tickMs,
+                           @Value("${acceptor.latency.dispatch-threads:2}") int dispatchThreads) {
+        this.mode = mode.toLowerCase();
+        this.fixedMs = fixedMs;
+        this.minMs = minMs;
+        this.maxMs = maxMs;
+        this.medianMs = medianMs;
+        this.sigma = sigma;
+        this.tickNanos = tickMs * 1_000_000L;
+        this.dispatcher = Executors.newFixedThreadPool(Math.max(1, dispatchThreads), SessionThreads.daemonFactory("latency-send-"));
+        if (!"none".equals(describe())) wheel(); // any mode other than none
+        log.info("Acceptor latency injection: {}", describe());
+    }
+
+    /**
+     * Delay for one response: the rule's delayMs when it has one, else a draw from the configured distribution.
+     */
+    public long delayMs(ResponseRules.Action rule) {
+        if (rule != null && rule.delayMs >= 0) return rule.delayMs;
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        switch (mode) {
+            case "fixed":
+                return fixedMs;
+            case "uniform":
+                return maxMs > minMs ? r.nextLong(minMs, maxMs + 1) : minMs;
+            case "lognormal":
+                return Math.min(maxMs, Math.round(medianMs * Math.exp(sigma * r.nextGaussian())));
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Runs send now if delayMs is 0, otherwise on a dispatch thread once the delay has passed.
+     */
+    public void submit(long delayMs, Runnable send) {
+        injected.recordValue(Math.max(0, delayMs) * 1000);
+        if (delayMs <= 0) {
+            immediate.incrementAndGet();
+            send.run();
+            return;
+        }
+        delayed.incrementAndGet();
+        long due = System.nanoTime() + delayMs * 1_000_000L;
+        wheel().schedule(delayMs * 1_000_000L, () -> {
+            lateness.recordValue(Math.max(0, System.nanoTime() - due) / 1000);
+            send.run();
+        });
+    }
+
+    private HashedTimerWheel wheel() {
+        HashedTimerWheel w = wheel;
+        if (w != null) return w;
+        synchronized (this) {
+            if (wheel == null) wheel = new HashedTimerWheel("latency-wheel", tickNanos, 4096, dispatcher);
+            return wheel;
+        }
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("distribution", describe());
+        m.put("immediate", immediate.get());
+        m.put("delayed", delayed.get());
+        HashedTimerWheel w = wheel;
+        m.put("pending", w != null ? w.getPending() : 0);
+        m.put("injectedP50Ms", injected.getValueAtPercentile(50.0) / 1000.0);
+        m.put("injectedP99Ms", injected.getValueAtPercentile(99.0) / 1000.0);
+        m.put("injectedMaxMs", injected.getMaxValue() / 1000.0);
+        m.put("injectedMeanMs", injected.getMean() / 1000.0);
+        m.put("latenessP99Ms", lateness.getValueAtPercentile(99.0) / 1000.0);
+        m.put("latenessMaxMs", lateness.getMaxValue() / 1000.0);
+        return m;
+    }
+
+    public void reset() {
+        immediate.set(0);
+        delayed.set(0);
+        injected.reset();
+        lateness.reset();
+    }
+
+    private String describe() {
+        switch (mode) {
+            case "fixed":
+                return "fixed " + fixedMs + "ms";
+            case "uniform":
+                return "uniform " + minMs + ".." + maxMs + "ms";
+            case "lognormal":
+                return "lognormal median " + medianMs + "ms sigma " + sigma + " max " + maxMs + "ms";
+            default:
+                return "none";
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (wheel != null) wheel.close();
+        dispatcher.shutdownNow();
+    }
+}
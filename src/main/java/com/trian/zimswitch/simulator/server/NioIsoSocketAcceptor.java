@@ -0,0 +1,440 @@
+package com.trian.zimswitch.simulator.server;
+
+import com.trian.zimswitch.simulator.capture.FrameCapture;
+import com.trian.zimswitch.simulator.framing.BufferPool;
+import com.trian.zimswitch.simulator.framing.FrameCodec;
+import com.trian.zimswitch.simulator.framing.LengthFormat;
+import com.trian.zimswitch.simulator.metrics.IsoMetrics;
+import com.trian.zimswitch.simulator.util.SessionThreads;
+import org.jpos.iso.ISOPackager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selector-based variant of {@link RawIsoSocketAcceptor} (acceptor.socket.mode=nio).
+ * A few event-loop threads own all sockets and do non-blocking reads with partial-frame
+ * reassembly into pooled (optionally direct) read buffers; only complete frames are handed to a
+ * fixed worker pool, so idle terminals cost a selection key and a small buffer instead of a thread.
+ * Responses go out as a gathering write of length + header and the packed body. Requests beyond the
+ * {@link AdmissionControl} limits are answered from the event loop instead of queued for a worker.
+ */
+@Component
+public class NioIsoSocketAcceptor implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(NioIsoSocketAcceptor.class);
+
+    private final ISOPackager packager;
+    private final ResponseRuleEngine ruleEngine;
+    private final LatencyInjector latency;
+    private final IsoMetrics metrics;
+    private final SessionStats stats;
+    private final FrameCapture capture;
+    private final AdmissionControl.Gate gate;
+
+    @Value("${acceptor.socket.enabled:true}")
+    private boolean enabled;
+
+    @Value("${acceptor.socket.mode:blocking}")
+    private String mode;
+
+    @Value("${acceptor.socket.port:6000}")
+    private int port;
+
+    @Value("${acceptor.socket.header:00}")
+    private String headerHex;
+
+    @Value("${acceptor.socket.strip-first-byte:true}")
+    private boolean stripFirstByte;
+
+    @Value("${acceptor.socket.length-format:binary}")
+    private String lengthFormat;
+
+    @Value("${acceptor.socket.buffer-size:4096}")
+    private int bufferSize;
+
+    @Value("${acceptor.socket.pooled-buffers:1024}")
+    private int pooledBuffers;
+
+    // Direct per-connection read buffers (socket reads skip the JDK's temporary direct copy)
+    @Value("${acceptor.socket.direct-buffers:false}")
+    private boolean directBuffers;
+
+    @Value("${acceptor.socket.idle-timeout:60000}")
+    private int idleTimeoutMs;
+
+    @Value("${acceptor.socket.max-connections:1000}")
+    private int maxConnections;
+
+    @Value("${acceptor.socket.event-loops:2}")
+    private int eventLoops;
+
+    @Value("${acceptor.socket.workers:8}")
+    private int workerCount;
+
+    @Value("${acceptor.socket.worker-queue:1000}")
+    private int workerQueue;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private ServerSocketChannel server;
+    private EventLoop[] loops;
+    private ExecutorService workers;
+    private FrameCodec codec;
+    private BufferPool readBuffers;
+
+    public NioIsoSocketAcceptor(ISOPackager packager, ResponseRuleEngine ruleEngine, LatencyInjector latency,
+                                IsoMetrics metrics, AcceptorStats acceptorStats, FrameCapture capture,
+                                AdmissionControl admission) {
+        this.packager = packager;
+        this.ruleEngine = ruleEngine;
+        this.latency = latency;
+        this.metrics = metrics;
+        this.stats = acceptorStats.get("nio");
+        this.capture = capture;
+        this.gate = admission.get("nio");
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || !"nio".equalsIgnoreCase(mode) || running.get()) return;
+        try {
+            codec = new FrameCodec(LengthFormat.of(lengthFormat), FrameCodec.header(headerHex), stripFirstByte ? 1 : 0,
+                    new BufferPool(bufferSize, pooledBuffers, false));
+            readBuffers = new BufferPool(bufferSize, pooledBuffers, directBuffers);
+            workers = SessionThreads.newWorkerPool(workerCount, workerQueue, "nio-iso-worker-");
+            stats.configure("event-loop", maxConnections);
+            loops = new EventLoop[Math.max(1, eventLoops)];
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new EventLoop(i);
+            }
+            server = ServerSocketChannel.open();
+            server.configureBlocking(false);
+            server.bind(new InetSocketAddress("0.0.0.0", port), 1024);
+            running.set(true);
+            // Loop 0 also accepts; accepted sockets are spread round-robin over all loops
+            loops[0].execute(() -> {
+                try {
+                    server.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+                } catch (ClosedChannelException e) {
+                    log.warn("NIO acceptor register failed: {}", e.getMessage());
+                }
+            });
+            for (EventLoop loop : loops) loop.thread.start();
+            log.info("NIO ISO acceptor listening on {} ({} event loops, {} workers, length={}, stripFirstByte={}, header={}, directBuffers={})",
+                    port, loops.length, workerCount, codec.format(), stripFirstByte, headerHex, directBuffers);
+        } catch (IOException e) {
+            log.warn("Failed to start NIO ISO acceptor on {}: {}", port, e.getMessage());
+        }
+    }
+
+    private void accept() {
+        SocketChannel ch;
+        try {
+            while ((ch = server.accept()) != null) {
+                if (connections.incrementAndGet() > maxConnections) {
+                    connections.decrementAndGet();
+                    log.warn("Rejecting POS {}: max connections ({}) reached", ch.getRemoteAddress(), maxConnections);
+                    ch.close();
+                    continue;
+                }
+                ch.configureBlocking(false);
+                ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                EventLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+                SocketChannel accepted = ch;
+                loop.execute(() -> loop.register(accepted));
+            }
+        } catch (IOException e) {
+            if (running.get()) log.warn("Accept error: {}", e.getMessage());
+        }
+    }
+
+    private final class EventLoop implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        EventLoop(int id) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "nio-iso-loop-" + id);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Runs the task on this loop's thread; the selector is woken up so it is picked up promptly.
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void register(SocketChannel ch) {
+            try {
+                Connection conn = new Connection(this, ch);
+                conn.key = ch.register(selector, SelectionKey.OP_READ, conn);
+                stats.sessionStarted();
+                log.debug("POS connected: {}", ch.getRemoteAddress());
+            } catch (IOException e) {
+                connections.decrementAndGet();
+                try { ch.close(); } catch (IOException ignore) {}
+            }
+        }
+
+        @Override
+        public void run() {
+            long lastIdleScan = System.currentTimeMillis();
+            while (running.get()) {
+                try {
+                    selector.select(1000);
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        try {
+                            task.run();
+                        } catch (RuntimeException e) {
+                            log.warn("Event loop task failed", e);
+                        }
+                    }
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+                        Connection conn = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) conn.onReadable();
+                            if (key.isValid() && key.isWritable()) conn.onWritable();
+                        } catch (RuntimeException e) {
+                            // One broken connection must not take the loop and its other connections down
+                            log.warn("Closing {} after error", conn.remote, e);
+                            conn.close();
+                        }
+                    }
+                    long now = System.currentTimeMillis();
+                    if (idleTimeoutMs > 0 && now - lastIdleScan >= 1000) {
+                        lastIdleScan = now;
+                        closeIdle(now);
+                    }
+                } catch (IOException e) {
+                    if (running.get()) log.warn("Event loop error: {}", e.getMessage());
+                } catch (RuntimeException e) {
+                    if (running.get()) log.warn("Event loop error", e);
+                }
+            }
+            try { selector.close(); } catch (IOException ignore) {}
+        }
+
+        private void closeIdle(long now) {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    Connection conn = (Connection) key.attachment();
+                    if (conn.pending == 0 && now - conn.lastActivity > idleTimeoutMs) {
+                        log.debug("POS idle timeout: {}", conn.remote);
+                        conn.close();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Per-socket state; only touched from its event loop thread.
+     */
+    private final class Connection {
+        final EventLoop loop;
+        final SocketChannel ch;
+        final Object remote;
+        final Queue<ByteBuffer[]> writes = new ArrayDeque<>();
+        final RateLimiter limiter = gate.newRateLimiter();
+        ByteBuffer in = readBuffers.acquire(bufferSize);
+        SelectionKey key;
+        long lastActivity = System.currentTimeMillis();
+        int pending;
+        boolean closed;
+
+        Connection(EventLoop loop, SocketChannel ch) throws IOException {
+            this.loop = loop;
+            this.ch = ch;
+            this.remote = ch.getRemoteAddress();
+        }
+
+        void onReadable() {
+            int n;
+            try {
+                n = ch.read(in);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (n < 0) {
+                close();
+                return;
+            }
+            lastActivity = System.currentTimeMillis();
+            in.flip();
+            // Reassemble: length header followed by that many bytes (TPDU + ISO message)
+            try {
+                int len;
+                while ((len = codec.frameLength(in)) >= 0) {
+                    int size = codec.format().size() + len;
+                    if (in.remaining() < size) {
+                        if (size > in.capacity()) {
+                            ByteBuffer bigger = readBuffers.acquire(size);
+                            bigger.put(in);
+                            readBuffers.release(in);
+                            in = bigger;
+                            return;
+                        }
+                        break;
+                    }
+                    dispatch(codec.take(in, len));
+                    // A shed response is written inline and may have closed the connection
+                    if (closed) return;
+                }
+            } catch (IOException e) {
+                log.warn("Bad frame from {}: {}", remote, e.getMessage());
+                close();
+                return;
+            }
+            in.compact();
+        }
+
+        private void dispatch(ByteBuffer frame) {
+            pending++;
+            long received = System.nanoTime();
+            capture.record(FrameCapture.Source.NIO_ACCEPTOR, FrameCapture.IN, codec.strip(),
+                    frame.array(), frame.arrayOffset(), frame.limit());
+            String shedRc = gate.admit(limiter, received);
+            if (shedRc == null) {
+                try {
+                    process(frame, received);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    shedRc = gate.overflow();
+                }
+            }
+            ByteBuffer[] response = reject(frame, shedRc);
+            codec.release(frame);
+            completed(response, received);
+        }
+
+        private void process(ByteBuffer frame, long received) {
+            workers.execute(() -> {
+                ByteBuffer[] out = null;
+                long delayMs = 0;
+                try {
+                    String budgetRc = gate.checkBudget(received);
+                    if (budgetRc != null) {
+                        out = reject(frame, budgetRc);
+                    } else {
+                        RawIsoSocketAcceptor.Reply reply = RawIsoSocketAcceptor.handleFrame(packager, ruleEngine.rules(), metrics, codec, frame);
+                        out = encode(reply.body);
+                        delayMs = latency.delayMs(reply.rule);
+                    }
+                } catch (Exception e) {
+                    log.warn("Client error: {}", e.getMessage());
+                } finally {
+                    gate.done();
+                    codec.release(frame);
+                }
+                ByteBuffer[] response = out;
+                latency.submit(delayMs, () -> loop.execute(() -> completed(response, received)));
+            });
+        }
+
+        /**
+         * Fast-fail response, or null if the request could not be unpacked.
+         */
+        private ByteBuffer[] reject(ByteBuffer frame, String rc) {
+            try {
+                return encode(RawIsoSocketAcceptor.rejectBody(packager, codec, frame, rc));
+            } catch (Exception e) {
+                log.warn("Client error: {}", e.getMessage());
+                return null;
+            }
+        }
+
+        private ByteBuffer[] encode(byte[] body) {
+            capture.record(FrameCapture.Source.NIO_ACCEPTOR, FrameCapture.OUT, codec.header(), body);
+            return codec.encode(body);
+        }
+
+        private void completed(ByteBuffer[] response, long receivedNanos) {
+            pending--;
+            if (closed || response == null) return;
+            writes.add(response);
+            onWritable();
+            // Queued for the socket; a full send buffer adds to this only until the next OP_WRITE
+            stats.recordLatency(System.nanoTime() - receivedNanos);
+        }
+
+        void onWritable() {
+            try {
+                ByteBuffer[] b;
+                while ((b = writes.peek()) != null) {
+                    ch.write(b);
+                    // Length/header and body in one gathering write; done when the body is
+                    if (b[b.length - 1].hasRemaining()) break;
+                    writes.poll();
+                }
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            key.interestOps(writes.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        void close() {
+            if (closed) return;
+            closed = true;
+            key.cancel();
+            try { ch.close(); } catch (IOException ignore) {}
+            readBuffers.release(in);
+            in = null;
+            connections.decrementAndGet();
+            stats.sessionEnded();
+            log.debug("POS disconnected: {}", remote);
+        }
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    @Override
+    public void stop() {
+        if (!running.getAndSet(false)) return;
+        try { if (server != null) server.close(); } catch (IOException ignore) {}
+        for (EventLoop loop : loops) loop.selector.wakeup();
+        workers.shutdownNow();
+        log.info("NIO ISO acceptor stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running.get();
+    }
+}
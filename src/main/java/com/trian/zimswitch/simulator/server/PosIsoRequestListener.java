@@ -1,5 +1,6 @@
 package com.trian.zimswitch.simulator.server;
 
+import com.trian.zimswitch.simulator.traffic.TrafficLog;
 import org.jpos.iso.ISOMsg;
 import org.jpos.iso.ISOSource;
 import org.jpos.iso.ISOException;
@@ -8,27 +9,44 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 /**
- * Minimal ISO8583 request listener that logs and replies with 00.
+ * Minimal ISO8583 request listener that logs (via {@link TrafficLog}) and replies with 00,
+ * or with the response code and fields of the matching {@link ResponseRuleEngine} rule,
+ * after the delay chosen by {@link LatencyInjector}. Requests beyond the {@link AdmissionControl}
+ * limits get the reject RC at once. Sessions process their requests one at a time, so there is no
+ * worker queue here and the latency budget does not apply.
  */
 @Component
 public class PosIsoRequestListener implements ISORequestListener {
     private static final Logger log = LoggerFactory.getLogger(PosIsoRequestListener.class);
 
+    private final SessionStats stats;
+    private final ResponseRuleEngine ruleEngine;
+    private final LatencyInjector latency;
+    private final TrafficLog traffic;
+    private final AdmissionControl.Gate gate;
+    // Per-channel limiters; entries go away with the session's channel
+    private final Map<ISOSource, RateLimiter> limiters = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public PosIsoRequestListener(AcceptorStats acceptorStats, ResponseRuleEngine ruleEngine, LatencyInjector latency,
+                                 TrafficLog traffic, AdmissionControl admission) {
+        this.stats = acceptorStats.get("jpos");
+        this.ruleEngine = ruleEngine;
+        this.latency = latency;
+        this.traffic = traffic;
+        this.gate = admission.get("jpos");
+    }
+
     @Override
     public boolean process(ISOSource source, ISOMsg m) {
+        long start = System.nanoTime();
+        String shedRc = gate.admit(limiters.computeIfAbsent(source, s -> gate.newRateLimiter()), start);
         try {
-            String mti;
-            try {
-                mti = m.getMTI();
-            } catch (ISOException e) {
-                mti = m.hasField(0) ? m.getString(0) : "";
-            }
-            String f2 = m.hasField(2) ? maskPan(m.getString(2)) : "";
-            String f3 = m.hasField(3) ? m.getString(3) : "";
-            String f4 = m.hasField(4) ? m.getString(4) : "";
-            String rrn = m.hasField(37) ? m.getString(37) : "";
-            log.info("ACCEPT MTI={} PAN={} F3={} F4={} RRN={}", mti, f2, f3, f4, rrn);
+            traffic.record("ACCEPT-IN", m);
 
             ISOMsg resp = (ISOMsg) m.clone();
             try {
@@ -41,25 +59,32 @@ public class PosIsoRequestListener implements ISORequestListener {
                     resp.set(0, r);
                 }
             }
+            if (shedRc != null) {
+                resp.set(39, shedRc);
+                source.send(resp);
+                traffic.record("ACCEPT-OUT", resp);
+                return true;
+            }
             if (!resp.hasField(39)) {
                 resp.set(39, "00");
             }
-            source.send(resp);
+            ResponseRules.Action rule = ruleEngine.rules().match(m);
+            if (rule != null) rule.apply(resp);
+            // Delayed responses are sent from the timer wheel, so this session thread is free right away
+            latency.submit(latency.delayMs(rule), () -> {
+                try {
+                    source.send(resp);
+                    stats.recordLatency(System.nanoTime() - start);
+                    traffic.record("ACCEPT-OUT", resp);
+                } catch (Exception e) {
+                    log.warn("Error sending ISO response: {}", e.getMessage());
+                }
+            });
         } catch (Exception e) {
             log.warn("Error processing inbound ISO message: {}", e.getMessage());
+        } finally {
+            if (shedRc == null) gate.done();
         }
         return true;
     }
-
-    private static String maskPan(String pan) {
-        if (pan == null || pan.length() < 10) return "********";
-        int keepStart = 6;
-        int keepEnd = 4;
-        int maskLen = Math.max(0, pan.length() - keepStart - keepEnd);
-        StringBuilder sb = new StringBuilder();
-        sb.append(pan, 0, Math.min(keepStart, pan.length()));
-        for (int i = 0; i < maskLen; i++) sb.append('*');
-        if (pan.length() > keepEnd) sb.append(pan.substring(pan.length() - keepEnd));
-        return sb.toString();
-    }
 }
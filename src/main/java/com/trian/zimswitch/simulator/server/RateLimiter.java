@@ -0,0 +1,30 @@
+package com.trian.zimswitch.simulator.server;
+
+/**
+ * Token bucket for one connection. Not thread-safe: used only by the thread that reads the
+ * connection (blocking reader, event loop or jPOS session thread).
+ */
+final class RateLimiter {
+    private final double tokensPerNano;
+    private final double burst;
+    private double tokens;
+    private long lastNanos;
+
+    RateLimiter(double perSecond, int burst) {
+        this.tokensPerNano = perSecond / 1e9;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.lastNanos = System.nanoTime();
+    }
+
+    boolean tryAcquire(long nowNanos) {
+        long elapsed = nowNanos - lastNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(burst, tokens + elapsed * tokensPerNano);
+            lastNanos = nowNanos;
+        }
+        if (tokens < 1) return false;
+        tokens -= 1;
+        return true;
+    }
+}
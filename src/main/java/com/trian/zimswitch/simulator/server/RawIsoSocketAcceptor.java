@@ -1,28 +1,41 @@
 package com.trian.zimswitch.simulator.server;
 
+import com.trian.zimswitch.simulator.capture.FrameCapture;
+import com.trian.zimswitch.simulator.framing.BufferPool;
+import com.trian.zimswitch.simulator.framing.FrameCodec;
+import com.trian.zimswitch.simulator.framing.LengthFormat;
+import com.trian.zimswitch.simulator.metrics.IsoMetrics;
+import com.trian.zimswitch.simulator.util.SessionThreads;
 import org.jpos.iso.ISOMsg;
 import org.jpos.iso.ISOPackager;
-import org.jpos.iso.ISOUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Component;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.Arrays;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Simple ISO8583 server using plain ServerSocket with length-prefix framing
+ * Simple ISO8583 server using plain ServerSocket with length-prefix framing ({@link FrameCodec})
  * and optional 1-byte TPDU header strip/append, inspired by the user's example.
+ * Connections are persistent: frames are read in a loop, each request is processed on a fixed
+ * worker pool with a bounded queue and responses are written back in completion order (pipelining). Requests beyond the
+ * {@link AdmissionControl} limits are answered from the reader thread instead of queued.
  */
 @Component
 public class RawIsoSocketAcceptor implements SmartLifecycle {
@@ -36,31 +49,88 @@ public class RawIsoSocketAcceptor implements SmartLifecycle {
     @Value("${acceptor.socket.port:6000}")
     private int port;
 
+    // blocking (this acceptor) or nio (NioIsoSocketAcceptor)
+    @Value("${acceptor.socket.mode:blocking}")
+    private String mode;
+
     // Hex string, e.g. "00" or "42". Appended to responses if not blank
     @Value("${acceptor.socket.header:00}")
     private String headerHex;
 
-    // If true, strip the first byte after the 2-byte length (typical for NAC)
+    // If true, strip the first byte after the length header (typical for NAC)
     @Value("${acceptor.socket.strip-first-byte:true}")
     private boolean stripFirstByte;
 
-    private final ExecutorService pool = Executors.newCachedThreadPool();
+    // Length header: binary (2-byte NAC), ascii (4 digits) or bcd (2 bytes)
+    @Value("${acceptor.socket.length-format:binary}")
+    private String lengthFormat;
+
+    // Pooled frame buffers: size of each and how many are kept
+    @Value("${acceptor.socket.buffer-size:4096}")
+    private int bufferSize;
+
+    @Value("${acceptor.socket.pooled-buffers:1024}")
+    private int pooledBuffers;
+
+    // Close a connection after this long without an inbound frame (0 = never)
+    @Value("${acceptor.socket.idle-timeout:60000}")
+    private int idleTimeoutMs;
+
+    // Connections beyond this limit are closed right after accept
+    @Value("${acceptor.socket.max-connections:1000}")
+    private int maxConnections;
+
+    // platform: cached platform threads; virtual: one virtual thread per connection (Java 21+)
+    @Value("${acceptor.threads:platform}")
+    private String threadMode;
+
+    // Requests are processed on a fixed pool; a full queue sheds them like max-queued
+    @Value("${acceptor.socket.workers:8}")
+    private int workerCount;
+
+    @Value("${acceptor.socket.worker-queue:1000}")
+    private int workerQueue;
+
+    private final SessionStats stats;
+    private final ResponseRuleEngine ruleEngine;
+    private final LatencyInjector latency;
+    private final IsoMetrics metrics;
+    private final FrameCapture capture;
+    private final AdmissionControl.Gate gate;
+    private ExecutorService pool;
+    private ExecutorService workers;
+    private FrameCodec codec;
     private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicInteger connections = new AtomicInteger();
     private ServerSocket server;
 
-    public RawIsoSocketAcceptor(ISOPackager packager) {
+    public RawIsoSocketAcceptor(ISOPackager packager, AcceptorStats acceptorStats, ResponseRuleEngine ruleEngine,
+                                LatencyInjector latency, IsoMetrics metrics, FrameCapture capture,
+                                AdmissionControl admission) {
         this.packager = packager;
+        this.stats = acceptorStats.get("raw");
+        this.ruleEngine = ruleEngine;
+        this.latency = latency;
+        this.metrics = metrics;
+        this.capture = capture;
+        this.gate = admission.get("raw");
     }
 
     @Override
     public void start() {
-        if (!enabled || running.get()) return;
+        if (!enabled || !"blocking".equalsIgnoreCase(mode) || running.get()) return;
         try {
+            codec = new FrameCodec(LengthFormat.of(lengthFormat), FrameCodec.header(headerHex), stripFirstByte ? 1 : 0,
+                    new BufferPool(bufferSize, pooledBuffers, false));
+            pool = SessionThreads.newExecutor(threadMode, "raw-iso-");
+            workers = SessionThreads.newWorkerPool(workerCount, workerQueue, "raw-iso-worker-");
+            stats.configure(SessionThreads.isVirtual(threadMode) ? "virtual" : "platform", maxConnections);
             server = new ServerSocket();
             // Bind on all interfaces
             server.bind(new InetSocketAddress("0.0.0.0", port));
             running.set(true);
-            log.info("Raw ISO acceptor listening on {} (stripFirstByte={}, header={})", port, stripFirstByte, headerHex);
+            log.info("Raw ISO acceptor listening on {} ({} workers, length={}, stripFirstByte={}, header={}, idleTimeout={}ms, maxConnections={})",
+                    port, workerCount, codec.format(), stripFirstByte, headerHex, idleTimeoutMs, maxConnections);
             pool.submit(this::acceptLoop);
         } catch (IOException e) {
             log.warn("Failed to start raw ISO acceptor on {}: {}", port, e.getMessage());
@@ -81,43 +151,183 @@ public class RawIsoSocketAcceptor implements SmartLifecycle {
     }
 
     private void handleClient(Socket socket) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            log.warn("Rejecting POS {}: max connections ({}) reached", socket.getRemoteSocketAddress(), maxConnections);
+            try { socket.close(); } catch (IOException ignore) {}
+            return;
+        }
         log.info("POS connected: {}", socket.getRemoteSocketAddress());
-        try (DataInputStream in = new DataInputStream(socket.getInputStream());
-             DataOutputStream out = new DataOutputStream(socket.getOutputStream())) {
-            int length = in.readUnsignedShort();
-            byte[] data = new byte[length];
-            in.readFully(data);
-
-            byte[] payload = data;
-            if (stripFirstByte && data.length > 0) {
-                payload = Arrays.copyOfRange(data, 1, data.length);
+        stats.sessionStarted();
+        Connection conn = new Connection(socket);
+        RateLimiter limiter = gate.newRateLimiter();
+        try {
+            socket.setSoTimeout(idleTimeoutMs);
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            conn.out = new BufferedOutputStream(socket.getOutputStream());
+            while (running.get()) {
+                ByteBuffer frame = codec.read(in);
+                if (frame == null) break;
+                long received = System.nanoTime();
+                capture.record(FrameCapture.Source.RAW_ACCEPTOR, FrameCapture.IN, codec.strip(),
+                        frame.array(), frame.arrayOffset(), frame.limit());
+                conn.pending.incrementAndGet();
+                String shedRc = gate.admit(limiter, received);
+                if (shedRc == null) {
+                    try {
+                        workers.execute(() -> conn.process(frame, received));
+                        continue;
+                    } catch (RejectedExecutionException e) {
+                        shedRc = gate.overflow();
+                    }
+                }
+                conn.reject(frame, received, shedRc);
+                codec.release(frame);
             }
+        } catch (SocketTimeoutException e) {
+            log.info("POS idle timeout: {}", socket.getRemoteSocketAddress());
+        } catch (Exception e) {
+            log.warn("Client error: {}", e.getMessage());
+        } finally {
+            conn.readerDone();
+        }
+    }
 
-            ISOMsg req = new ISOMsg();
-            req.setPackager(packager);
-            req.unpack(payload);
+    private final class Connection {
+        final Socket socket;
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicBoolean closed = new AtomicBoolean();
+        final AtomicLong frames = new AtomicLong();
+        final long openedNanos = System.nanoTime();
+        volatile boolean readerDone;
+        OutputStream out;
 
-            // Build response
-            ISOMsg resp = buildResponse(req);
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
 
-            byte[] respPacked = resp.pack();
-            byte[] header = (headerHex != null && !headerHex.isBlank()) ? ISOUtil.hex2byte(headerHex) : new byte[0];
-            byte[] finalResp = new byte[header.length + respPacked.length];
-            System.arraycopy(header, 0, finalResp, 0, header.length);
-            System.arraycopy(respPacked, 0, finalResp, header.length, respPacked.length);
+        void process(ByteBuffer frame, long receivedNanos) {
+            Reply reply;
+            try {
+                String shedRc = gate.checkBudget(receivedNanos);
+                if (shedRc != null) {
+                    reject(frame, receivedNanos, shedRc);
+                    return;
+                }
+                reply = handleFrame(packager, ruleEngine.rules(), metrics, codec, frame);
+            } catch (Exception e) {
+                log.warn("Client error: {}", e.getMessage());
+                requestDone();
+                return;
+            } finally {
+                gate.done();
+                codec.release(frame);
+            }
+            // Delayed replies wait on the timer wheel, not on this thread
+            latency.submit(latency.delayMs(reply.rule), () -> write(reply.body, receivedNanos));
+        }
 
-            out.writeShort(finalResp.length);
-            out.write(finalResp);
-            out.flush();
-        } catch (Exception e) {
-            log.warn("Client error: {}", e.getMessage());
-        } finally {
+        void reject(ByteBuffer frame, long receivedNanos, String rc) {
+            byte[] body;
+            try {
+                body = rejectBody(packager, codec, frame, rc);
+            } catch (Exception e) {
+                log.warn("Client error: {}", e.getMessage());
+                requestDone();
+                return;
+            }
+            write(body, receivedNanos);
+        }
+
+        private void write(byte[] body, long receivedNanos) {
+            try {
+                // Responses go out in completion order, one whole frame at a time
+                synchronized (this) {
+                    codec.write(out, body);
+                    out.flush();
+                }
+                capture.record(FrameCapture.Source.RAW_ACCEPTOR, FrameCapture.OUT, codec.header(), body);
+                frames.incrementAndGet();
+                stats.recordLatency(System.nanoTime() - receivedNanos);
+            } catch (Exception e) {
+                log.warn("Client error: {}", e.getMessage());
+            } finally {
+                requestDone();
+            }
+        }
+
+        private void requestDone() {
+            if (pending.decrementAndGet() == 0 && readerDone) close();
+        }
+
+        void readerDone() {
+            readerDone = true;
+            if (pending.get() == 0) close();
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) return;
             try { socket.close(); } catch (IOException ignore) {}
-            log.info("POS disconnected: {}", socket.getRemoteSocketAddress());
+            connections.decrementAndGet();
+            stats.sessionEnded();
+            double secs = (System.nanoTime() - openedNanos) / 1e9;
+            log.info("POS disconnected: {} ({} frames, {} TPS)", socket.getRemoteSocketAddress(), frames.get(),
+                    String.format("%.1f", secs > 0 ? frames.get() / secs : 0.0));
+        }
+    }
+
+    /**
+     * Packed response (without header) plus the rule that shaped it (null if none), which decides
+     * the injected delay.
+     */
+    static final class Reply {
+        final byte[] body;
+        final ResponseRules.Action rule;
+
+        Reply(byte[] body, ResponseRules.Action rule) {
+            this.body = body;
+            this.rule = rule;
         }
     }
 
-    private static ISOMsg buildResponse(ISOMsg req) throws Exception {
+    /**
+     * Turns one inbound frame (without the length header) into the packed response: unpack after
+     * the stripped TPDU, build the response and pack it; the codec adds the header when writing.
+     * Shared with {@link NioIsoSocketAcceptor}.
+     */
+    static Reply handleFrame(ISOPackager packager, ResponseRules rules, IsoMetrics metrics,
+                             FrameCodec codec, ByteBuffer frame) throws Exception {
+        long t0 = System.nanoTime();
+        ISOMsg req = codec.unpack(packager, frame);
+        metrics.acceptorUnpacked(System.nanoTime() - t0);
+
+        // Build response
+        ResponseRules.Action rule = rules.match(req);
+        ISOMsg resp = buildResponse(req, rule);
+
+        t0 = System.nanoTime();
+        byte[] respPacked = resp.pack();
+        metrics.acceptorPacked(System.nanoTime() - t0);
+        return new Reply(respPacked, rule);
+    }
+
+    /**
+     * Fast-fail answer to a shed request: the packed default response with RC rc, without rules.
+     * Shared with {@link NioIsoSocketAcceptor}.
+     */
+    static byte[] rejectBody(ISOPackager packager, FrameCodec codec, ByteBuffer frame, String rc) throws Exception {
+        ISOMsg resp = buildResponse(codec.unpack(packager, frame), null);
+        resp.set(39, rc);
+        return resp.pack();
+    }
+
+    /**
+     * Default responses: reversals keep their MTI, 0800/1200 get the response MTI, both with RC 00;
+     * anything else gets 1814/96. A matching rule overrides the RC and adds its fields, and also
+     * makes an otherwise unsupported MTI answerable.
+     */
+    static ISOMsg buildResponse(ISOMsg req, ResponseRules.Action rule) throws Exception {
         String mti = req.getMTI();
         ISOMsg resp;
         if ("1420".equals(mti) || "0420".equals(mti)) {
@@ -125,7 +335,7 @@ public class RawIsoSocketAcceptor implements SmartLifecycle {
             // Respond to reversal; keep MTI as-is or set response MTI depending on your switch
             // Here we keep MTI and set 39 indicating processed
             if (!resp.hasField(39)) resp.set(39, "00");
-        } else if ("0800".equals(mti) || "1200".equals(mti)) {
+        } else if ("0800".equals(mti) || "1200".equals(mti) || rule != null) {
             resp = (ISOMsg) req.clone();
             resp.setResponseMTI();
             resp.set(39, "00");
@@ -135,6 +345,7 @@ public class RawIsoSocketAcceptor implements SmartLifecycle {
             resp.setMTI("1814");
             resp.set(39, "96");
         }
+        if (rule != null) rule.apply(resp);
         return resp;
     }
 
@@ -142,6 +353,8 @@ public class RawIsoSocketAcceptor implements SmartLifecycle {
     public void stop() {
         running.set(false);
         try { if (server != null) server.close(); } catch (IOException ignore) {}
+        if (pool != null) pool.shutdownNow();
+        if (workers != null) workers.shutdownNow();
         log.info("Raw ISO acceptor stopped");
     }
 
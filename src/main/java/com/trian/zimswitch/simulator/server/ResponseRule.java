@@ -0,0 +1,45 @@
+package com.trian.zimswitch.simulator.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One acceptor response rule as read from the rules JSON. Null criteria match anything.
+ * Rules are evaluated in file order; the first matching rule wins.
+ */
+public class ResponseRule {
+    private String name;
+    // Match criteria
+    private String mti;
+    private String processingCode;
+    private Long amountMin;
+    private Long amountMax;
+    private String binPrefix;
+    private String terminalId;
+    // Response
+    private String responseCode;
+    private Map<String, String> fields = new LinkedHashMap<>();
+    // Response delay for this rule, overriding acceptor.latency.mode
+    private Long delayMs;
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    public String getMti() { return mti; }
+    public void setMti(String mti) { this.mti = mti; }
+    public String getProcessingCode() { return processingCode; }
+    public void setProcessingCode(String processingCode) { this.processingCode = processingCode; }
+    public Long getAmountMin() { return amountMin; }
+    public void setAmountMin(Long amountMin) { this.amountMin = amountMin; }
+    public Long getAmountMax() { return amountMax; }
+    public void setAmountMax(Long amountMax) { this.amountMax = amountMax; }
+    public String getBinPrefix() { return binPrefix; }
+    public void setBinPrefix(String binPrefix) { this.binPrefix = binPrefix; }
+    public String getTerminalId() { return terminalId; }
+    public void setTerminalId(String terminalId) { this.terminalId = terminalId; }
+    public String getResponseCode() { return responseCode; }
+    public void setResponseCode(String responseCode) { this.responseCode = responseCode; }
+    public Map<String, String> getFields() { return fields; }
+    public void setFields(Map<String, String> fields) { this.fields = fields; }
+    public Long getDelayMs() { return delayMs; }
+    public void setDelayMs(Long delayMs) { this.delayMs = delayMs; }
+}
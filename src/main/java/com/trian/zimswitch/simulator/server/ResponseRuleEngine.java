@@ -0,0 +1,57 @@
+package com.trian.zimswitch.simulator.server;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Holds the compiled {@link ResponseRules} used by both acceptors, loaded from a JSON array of
+ * {@link ResponseRule} (acceptor.rules, classpath: or file: location). A missing file means no rules:
+ * every request gets the acceptor's default response. {@link #reload()} swaps in a new table atomically.
+ */
+@Component
+public class ResponseRuleEngine {
+    private static final Logger log = LoggerFactory.getLogger(ResponseRuleEngine.class);
+
+    private final Resource location;
+    private final ObjectMapper mapper;
+    private volatile ResponseRules rules;
+
+    public ResponseRuleEngine(@Value("${acceptor.rules:classpath:responder-rules.json}") Resource location,
+                              ObjectMapper mapper) throws IOException {
+        this.location = location;
+        this.mapper = mapper;
+        this.rules = load();
+    }
+
+    public ResponseRules rules() {
+        return rules;
+    }
+
+    public ResponseRules reload() throws IOException {
+        rules = load();
+        return rules;
+    }
+
+    private ResponseRules load() throws IOException {
+        if (!location.exists()) {
+            log.info("No response rules at {}; acceptors answer with their defaults", location);
+            return new ResponseRules(Collections.emptyList());
+        }
+        try (InputStream in = location.getInputStream()) {
+            List<ResponseRule> list = mapper.readValue(in, new TypeReference<List<ResponseRule>>() {});
+            ResponseRules compiled = new ResponseRules(list);
+            log.info("Loaded {} response rules from {}", compiled.size(), location);
+            return compiled;
+        }
+    }
+}
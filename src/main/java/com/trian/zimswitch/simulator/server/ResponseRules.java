@@ -0,0 +1,271 @@
+package com.trian.zimswitch.simulator.server;
+
+import org.jpos.iso.ISOMsg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+
+/**
+ * Response rules compiled into a dispatch tree, one level per criterion:
+ * MTI -> processing code (field 3) -> terminal ID (field 41) -> PAN BIN trie -> amount intervals.
+ * Wildcard rules are copied into every exact branch at compile time, so a lookup follows a single
+ * path and costs one map probe per level, a walk of at most the PAN length down the BIN trie and a
+ * binary search over the amount boundaries, however many rules are loaded.
+ * The first matching rule in file order wins.
+ */
+public final class ResponseRules {
+    private static final int MTI = 0, PROCESSING_CODE = 1, TERMINAL = 2;
+
+    private final List<ResponseRule> rules;
+    private final Action[] actions;
+    private final AtomicLongArray hits;
+    private final Object root;
+
+    public ResponseRules(List<ResponseRule> rules) {
+        this.rules = List.copyOf(rules);
+        this.actions = new Action[rules.size()];
+        for (int i = 0; i < actions.length; i++) {
+            actions[i] = new Action(i, rules.get(i));
+        }
+        this.hits = new AtomicLongArray(actions.length);
+        this.root = compileKeyLevel(MTI, Arrays.asList(actions));
+    }
+
+    public int size() {
+        return actions.length;
+    }
+
+    /**
+     * @return the winning rule, or null when none matches (callers keep their default response)
+     */
+    public Action match(ISOMsg m) {
+        if (actions.length == 0) return null;
+        Object node = root;
+        for (int level = MTI; level <= TERMINAL; level++) {
+            KeyNode k = (KeyNode) node;
+            Object next = k.exact.get(fieldValue(m, level));
+            node = next != null ? next : k.wildcard;
+        }
+        node = ((BinNode) node).lookup(m.hasField(2) ? m.getString(2) : null);
+        Action a = ((AmountTable) node).lookup(amount(m));
+        if (a != null) hits.incrementAndGet(a.index);
+        return a;
+    }
+
+    /**
+     * Rules with their hit counts, in evaluation order.
+     */
+    public List<Map<String, Object>> stats() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (int i = 0; i < actions.length; i++) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("name", actions[i].name);
+            m.put("rule", rules.get(i));
+            m.put("hits", hits.get(i));
+            out.add(m);
+        }
+        return out;
+    }
+
+    /**
+     * Response code and extra fields of a rule, with field numbers parsed once at compile time.
+     */
+    public static final class Action {
+        final int index;
+        final String name;
+        final String responseCode;
+        final int[] fieldIds;
+        final String[] fieldValues;
+        // -1 when the rule has no delay of its own
+        final long delayMs;
+        // Criteria, used while compiling
+        final String[] keys = new String[3];
+        final String binPrefix;
+        final long amountMin;
+        final long amountMax;
+        final boolean anyAmount;
+
+        Action(int index, ResponseRule r) {
+            this.index = index;
+            this.name = r.getName() != null ? r.getName() : "rule-" + index;
+            this.responseCode = r.getResponseCode();
+            this.delayMs = r.getDelayMs() != null ? r.getDelayMs() : -1;
+            Map<String, String> f = r.getFields() != null ? r.getFields() : Map.of();
+            this.fieldIds = new int[f.size()];
+            this.fieldValues = new String[f.size()];
+            int i = 0;
+            for (Map.Entry<String, String> e : f.entrySet()) {
+                fieldIds[i] = Integer.parseInt(e.getKey().trim());
+                fieldValues[i++] = e.getValue();
+            }
+            keys[MTI] = blankToNull(r.getMti());
+            keys[PROCESSING_CODE] = blankToNull(r.getProcessingCode());
+            keys[TERMINAL] = blankToNull(r.getTerminalId());
+            this.binPrefix = blankToNull(r.getBinPrefix());
+            this.anyAmount = r.getAmountMin() == null && r.getAmountMax() == null;
+            this.amountMin = r.getAmountMin() != null ? r.getAmountMin() : Long.MIN_VALUE;
+            this.amountMax = r.getAmountMax() != null ? r.getAmountMax() : Long.MAX_VALUE;
+            if (binPrefix != null && !binPrefix.chars().allMatch(Character::isDigit)) {
+                throw new IllegalArgumentException("Rule " + name + ": binPrefix must be digits");
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Sets field 39 (if the rule has a response code) and the rule's extra fields on the response.
+         */
+        public void apply(ISOMsg resp) {
+            if (responseCode != null) resp.set(39, responseCode);
+            for (int i = 0; i < fieldIds.length; i++) {
+                resp.set(fieldIds[i], fieldValues[i]);
+            }
+        }
+    }
+
+    // ---- compilation ----
+
+    private static Object compileKeyLevel(int level, List<Action> candidates) {
+        if (level > TERMINAL) return compileBin(candidates);
+        Map<String, Object> exact = new HashMap<>();
+        for (Action a : candidates) {
+            String key = a.keys[level];
+            if (key != null && !exact.containsKey(key)) {
+                exact.put(key, compileKeyLevel(level + 1, filter(candidates, x -> x.keys[level] == null || key.equals(x.keys[level]))));
+            }
+        }
+        Object wildcard = compileKeyLevel(level + 1, filter(candidates, x -> x.keys[level] == null));
+        return new KeyNode(exact, wildcard);
+    }
+
+    private static BinNode compileBin(List<Action> candidates) {
+        BinNode root = new BinNode();
+        root.table = new AmountTable(filter(candidates, a -> a.binPrefix == null));
+        for (Action a : candidates) {
+            if (a.binPrefix == null) continue;
+            BinNode n = root;
+            for (int i = 0; i < a.binPrefix.length(); i++) {
+                int d = a.binPrefix.charAt(i) - '0';
+                if (n.children[d] == null) n.children[d] = new BinNode();
+                n = n.children[d];
+            }
+            if (n.table == null) {
+                String prefix = a.binPrefix;
+                n.table = new AmountTable(filter(candidates, x -> x.binPrefix == null || prefix.startsWith(x.binPrefix)));
+            }
+        }
+        return root;
+    }
+
+    private static List<Action> filter(List<Action> in, Predicate<Action> keep) {
+        List<Action> out = new ArrayList<>();
+        for (Action a : in) if (keep.test(a)) out.add(a);
+        return out;
+    }
+
+    private static final class KeyNode {
+        final Map<String, Object> exact;
+        final Object wildcard;
+
+        KeyNode(Map<String, Object> exact, Object wildcard) {
+            this.exact = exact;
+            this.wildcard = wildcard;
+        }
+    }
+
+    /**
+     * Digit trie over BIN prefixes; the deepest node with a table on the PAN's path wins
+     * (its table already contains the rules of every shorter matching prefix).
+     */
+    private static final class BinNode {
+        final BinNode[] children = new BinNode[10];
+        AmountTable table;
+
+        AmountTable lookup(String pan) {
+            AmountTable best = table;
+            if (pan == null) return best;
+            BinNode n = this;
+            for (int i = 0; i < pan.length(); i++) {
+                int d = pan.charAt(i) - '0';
+                if (d < 0 || d > 9 || (n = n.children[d]) == null) break;
+                if (n.table != null) best = n.table;
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Amount axis split at every rule boundary; each interval holds its first matching rule.
+     */
+    private static final class AmountTable {
+        final long[] starts;
+        final Action[] winners;
+        // Winner when field 4 is absent or not numeric: only rules without an amount range apply
+        final Action noAmount;
+
+        AmountTable(List<Action> candidates) {
+            TreeSet<Long> bounds = new TreeSet<>();
+            bounds.add(Long.MIN_VALUE);
+            for (Action a : candidates) {
+                if (a.anyAmount) continue;
+                bounds.add(a.amountMin);
+                if (a.amountMax != Long.MAX_VALUE) bounds.add(a.amountMax + 1);
+            }
+            starts = bounds.stream().mapToLong(Long::longValue).toArray();
+            winners = new Action[starts.length];
+            for (int i = 0; i < starts.length; i++) {
+                for (Action a : candidates) {
+                    if (starts[i] >= a.amountMin && starts[i] <= a.amountMax) {
+                        winners[i] = a;
+                        break;
+                    }
+                }
+            }
+            Action none = null;
+            for (Action a : candidates) {
+                if (a.anyAmount) {
+                    none = a;
+                    break;
+                }
+            }
+            noAmount = none;
+        }
+
+        Action lookup(Long amount) {
+            if (amount == null) return noAmount;
+            int i = Arrays.binarySearch(starts, amount);
+            return winners[i >= 0 ? i : -i - 2];
+        }
+    }
+
+    // ---- request fields ----
+
+    private static String fieldValue(ISOMsg m, int level) {
+        int field = level == MTI ? 0 : level == PROCESSING_CODE ? 3 : 41;
+        if (!m.hasField(field)) return null;
+        String v = m.getString(field);
+        return level == TERMINAL ? v.trim() : v;
+    }
+
+    private static Long amount(ISOMsg m) {
+        if (!m.hasField(4)) return null;
+        try {
+            return Long.parseLong(m.getString(4).trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String blankToNull(String s) {
+        return s == null || s.isBlank() ? null : s.trim();
+    }
+}
@@ -0,0 +1,90 @@
+package com.trian.zimswitch.simulator.server;
+
+import com.trian.zimswitch.simulator.metrics.IsoMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Session concurrency and request latency of one acceptor, used to compare thread modes.
+ * Also published to Micrometer, tagged with the listener name.
+ */
+public class SessionStats {
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peak = new AtomicInteger();
+    private final AtomicLong sessions = new AtomicLong();
+    // Microseconds from frame received to response written, 3 significant digits
+    private final Histogram latency = new ConcurrentHistogram(3);
+    private volatile String threadMode = "platform";
+    private volatile int maxSessions;
+    private final Counter accepted;
+    private final Timer requests;
+
+    public SessionStats(String listener, MeterRegistry registry) {
+        this.accepted = Counter.builder("zimswitch.acceptor.connections")
+                .description("Accepted connections")
+                .tag("listener", listener).register(registry);
+        this.requests = Timer.builder("zimswitch.acceptor.requests")
+                .description("Frame received to response written")
+                .tag("listener", listener)
+                .serviceLevelObjectives(IsoMetrics.SLO)
+                .register(registry);
+        Gauge.builder("zimswitch.acceptor.sessions", active, AtomicInteger::get)
+                .tag("listener", listener).register(registry);
+    }
+
+    public void sessionStarted() {
+        sessions.incrementAndGet();
+        accepted.increment();
+        int now = active.incrementAndGet();
+        peak.accumulateAndGet(now, Math::max);
+    }
+
+    public void sessionEnded() {
+        active.decrementAndGet();
+    }
+
+    public void recordLatency(long nanos) {
+        latency.recordValue(Math.max(0, nanos / 1000));
+        requests.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    public void configure(String threadMode, int maxSessions) {
+        this.threadMode = threadMode;
+        this.maxSessions = maxSessions;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("threadMode", threadMode);
+        m.put("maxSessions", maxSessions);
+        m.put("activeSessions", active.get());
+        m.put("peakSessions", peak.get());
+        m.put("totalSessions", sessions.get());
+        m.put("requests", latency.getTotalCount());
+        m.put("p50Ms", latency.getValueAtPercentile(50.0) / 1000.0);
+        m.put("p99Ms", latency.getValueAtPercentile(99.0) / 1000.0);
+        m.put("p999Ms", latency.getValueAtPercentile(99.9) / 1000.0);
+        m.put("maxMs", latency.getMaxValue() / 1000.0);
+        return m;
+    }
+
+    public void reset() {
+        peak.set(active.get());
+        sessions.set(0);
+        latency.reset();
+    }
+}
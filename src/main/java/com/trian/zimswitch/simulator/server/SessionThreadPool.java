@@ -0,0 +1,73 @@
+package com.trian.zimswitch.simulator.server;
+
+import org.jpos.util.ThreadPool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * jPOS {@link ThreadPool} facade for {@link org.jpos.iso.ISOServer} that runs each session on the
+ * given executor (platform or virtual threads) with concurrency bounded by a semaphore instead of
+ * a fixed number of pooled threads. The available/idle counts report free permits, so ISOServer's
+ * own exhaustion handling kicks in only when maxSessions is actually reached.
+ */
+public class SessionThreadPool extends ThreadPool {
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxSessions;
+    private final SessionStats stats;
+
+    public SessionThreadPool(ExecutorService executor, int maxSessions, SessionStats stats) {
+        // No pooled threads of its own: sessions run on executor, so the base pool starts none
+        super(0, 1, "iso-session-pool");
+        this.executor = executor;
+        this.permits = new Semaphore(maxSessions);
+        this.maxSessions = maxSessions;
+        this.stats = stats;
+    }
+
+    @Override
+    public void execute(Runnable session) {
+        permits.acquireUninterruptibly();
+        stats.sessionStarted();
+        try {
+            executor.execute(() -> {
+                try {
+                    session.run();
+                } finally {
+                    stats.sessionEnded();
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            stats.sessionEnded();
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getAvailableCount() {
+        return permits.availablePermits();
+    }
+
+    @Override
+    public int getIdleCount() {
+        return permits.availablePermits();
+    }
+
+    @Override
+    public int getActiveCount() {
+        return maxSessions - permits.availablePermits();
+    }
+
+    @Override
+    public int getMaxPoolSize() {
+        return maxSessions;
+    }
+
+    @Override
+    public int getPoolSize() {
+        return getActiveCount();
+    }
+}
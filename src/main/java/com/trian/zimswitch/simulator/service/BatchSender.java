@@ -0,0 +1,182 @@
+package com.trian.zimswitch.simulator.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jpos.iso.ISOMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+
+/**
+ * Pipelines a batch of transactions through the gateway channel pool and writes one NDJSON line
+ * per result as it completes, followed by a summary line. At most max-in-flight requests are
+ * outstanding; the next request is only taken from the input when one completes, so a streamed
+ * NDJSON upload is never held in memory. All output is written by the request thread.
+ */
+@Service
+public class BatchSender {
+    private static final Logger log = LoggerFactory.getLogger(BatchSender.class);
+
+    public static final Set<String> TYPES = Set.of("financial", "reversal", "echo");
+
+    private final ZimSwitchClientService clientService;
+    private final ObjectMapper mapper;
+
+    @Value("${gateway.batch.max-in-flight:64}")
+    private int maxInFlight;
+
+    public BatchSender(ZimSwitchClientService clientService, ObjectMapper mapper) {
+        this.clientService = clientService;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Sends every request and blocks until all of them have completed (or the client went away).
+     * Completions are queued and written by the calling (request) thread, never by the gateway
+     * reader threads that complete the futures.
+     *
+     * @param type financial, reversal or echo
+     * @param requests field overrides per transaction, read lazily
+     */
+    public void send(String type, Iterator<Map<String, String>> requests, OutputStream out) throws IOException {
+        Function<Map<String, String>, CompletableFuture<ISOMsg>> sender = sender(type);
+        BlockingQueue<Result> done = new LinkedBlockingQueue<>();
+        Counts counts = new Counts();
+        long start = System.nanoTime();
+        String inputError = null;
+        int sent = 0;
+        int inFlight = 0;
+        int window = Math.max(1, maxInFlight);
+        try {
+            while (true) {
+                Map<String, String> overrides;
+                try {
+                    if (!requests.hasNext()) break;
+                    overrides = requests.next();
+                } catch (RuntimeException e) {
+                    // Malformed NDJSON line or array element: stop reading, report what was sent
+                    inputError = "Invalid request #" + sent + ": " + e.getMessage();
+                    break;
+                }
+                for (; inFlight >= window; inFlight--) write(out, done.take(), counts);
+                int index = sent++;
+                CompletableFuture<ISOMsg> f;
+                try {
+                    f = sender.apply(overrides != null ? overrides : new HashMap<>());
+                } catch (RuntimeException e) {
+                    f = CompletableFuture.failedFuture(e);
+                }
+                f.whenComplete((resp, err) -> done.add(new Result(index, resp, err)));
+                inFlight++;
+                for (Result r; (r = done.poll()) != null; inFlight--) write(out, r, counts);
+            }
+            for (; inFlight > 0; inFlight--) write(out, done.take(), counts);
+        } catch (IOException e) {
+            // Requests still in flight complete into the abandoned queue
+            log.debug("Batch client went away: {}", e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("type", type);
+        summary.put("sent", sent);
+        summary.put("ok", counts.ok);
+        summary.put("failed", counts.failed);
+        summary.put("elapsedMs", elapsed / 1_000_000);
+        summary.put("tps", elapsed > 0 ? Math.round(sent * 1e9 / elapsed) : 0);
+        if (inputError != null) summary.put("error", inputError);
+        writeLine(out, Map.of("summary", summary));
+    }
+
+    /**
+     * The same overrides repeated count times (count + template batches).
+     */
+    public static Iterator<Map<String, String>> repeat(Map<String, String> template, int count) {
+        return new Iterator<>() {
+            int remaining = count;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public Map<String, String> next() {
+                if (remaining-- <= 0) throw new NoSuchElementException();
+                return template;
+            }
+        };
+    }
+
+    private Function<Map<String, String>, CompletableFuture<ISOMsg>> sender(String type) {
+        switch (type) {
+            case "financial":
+                return clientService::sendFinancialAsync;
+            case "reversal":
+                return clientService::sendReversalAsync;
+            case "echo":
+                return clientService::sendEchoAsync;
+            default:
+                throw new IllegalArgumentException("Unknown batch type: " + type);
+        }
+    }
+
+    private static final class Result {
+        final int index;
+        final ISOMsg resp;
+        final Throwable err;
+
+        Result(int index, ISOMsg resp, Throwable err) {
+            this.index = index;
+            this.resp = resp;
+            this.err = err;
+        }
+    }
+
+    private static final class Counts {
+        long ok;
+        long failed;
+    }
+
+    private void write(OutputStream out, Result r, Counts counts) throws IOException {
+        if (r.err == null) counts.ok++; else counts.failed++;
+        writeLine(out, result(r.index, r.resp, r.err));
+    }
+
+    private static Map<String, Object> result(int index, ISOMsg resp, Throwable err) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("index", index);
+        line.put("ok", err == null);
+        if (err == null) {
+            line.put("response", resp);
+        } else {
+            Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+            line.put("error", cause.getClass().getSimpleName() + ": " + cause.getMessage());
+        }
+        return line;
+    }
+
+    private void writeLine(OutputStream out, Object value) throws IOException {
+        byte[] json = mapper.writeValueAsBytes(value);
+        out.write(json);
+        out.write('\n');
+        out.flush();
+    }
+}
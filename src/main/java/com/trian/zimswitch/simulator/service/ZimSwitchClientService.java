@@ -1,49 +1,162 @@
 package com.trian.zimswitch.simulator.service;
 
+import com.trian.zimswitch.simulator.client.IsoChannelPool;
+import com.trian.zimswitch.simulator.client.NotSentException;
 import com.trian.zimswitch.simulator.iso.IsoMessageBuilder;
-import com.trian.zimswitch.simulator.iso.IsoResponseMapper;
-import com.trian.zimswitch.simulator.util.PanMasker;
+import com.trian.zimswitch.simulator.metrics.IsoMetrics;
+import com.trian.zimswitch.simulator.reversal.ReversalForwarder;
+import com.trian.zimswitch.simulator.traffic.TrafficLog;
+import com.trian.zimswitch.simulator.util.SessionThreads;
 import org.jpos.iso.ISOChannel;
 import org.jpos.iso.ISOException;
 import org.jpos.iso.ISOMsg;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
 
 @Service
-public class ZimSwitchClientService {
+public class ZimSwitchClientService implements AutoCloseable {
     private static final Logger log = LoggerFactory.getLogger(ZimSwitchClientService.class);
 
     private final ISOChannel channel;
+    private final IsoChannelPool pool;
     private final IsoMessageBuilder builder;
+    private final IsoMetrics metrics;
+    private final TrafficLog traffic;
+    private final ReversalForwarder reversals;
+    // Last response received on the locked channel, for idle detection
+    private volatile long channelActivityNanos = System.nanoTime();
+    // Drives the locked channel for submit* when the pool is off; one thread since the lock serializes sends anyway
+    private final ExecutorService channelDispatcher = Executors.newSingleThreadExecutor(SessionThreads.daemonFactory("iso-channel-dispatch-"));
 
-    public ZimSwitchClientService(ISOChannel channel, IsoMessageBuilder builder) {
+    // When true the blocking send* methods also go through the channel pool instead of the channel lock
+    @Value("${gateway.async.enabled:false}")
+    private boolean asyncEnabled;
+
+    // Longest a submit* request may queue for the locked channel before it is failed unsent; 0 = no limit
+    @Value("${gateway.rest.max-wait-ms:10000}")
+    private long maxWaitMs;
+
+    public ZimSwitchClientService(ISOChannel channel, IsoChannelPool pool, IsoMessageBuilder builder, IsoMetrics metrics,
+                                  TrafficLog traffic, ReversalForwarder reversals) {
         this.channel = channel;
+        this.pool = pool;
         this.builder = builder;
+        this.metrics = metrics;
+        this.traffic = traffic;
+        this.reversals = reversals;
     }
 
-    public Map<String, Object> sendFinancial(Map<String, String> overrides) throws Exception {
+    public ISOMsg sendFinancial(Map<String, String> overrides) throws Exception {
         ISOMsg req = builder.build1200(orDefault(overrides));
         ISOMsg resp = sendAndReceive(req);
         validateResponse(req, resp);
-        return IsoResponseMapper.toJson(resp);
+        return resp;
     }
 
-    public Map<String, Object> sendReversal(Map<String, String> overrides) throws Exception {
+    public ISOMsg sendReversal(Map<String, String> overrides) throws Exception {
         ISOMsg req = builder.build1400(orDefault(overrides));
         ISOMsg resp = sendAndReceive(req);
         validateResponse(req, resp);
-        return IsoResponseMapper.toJson(resp);
+        return resp;
     }
 
-    public Map<String, Object> sendEcho(Map<String, String> overrides) throws Exception {
+    public ISOMsg sendEcho(Map<String, String> overrides) throws Exception {
         ISOMsg req = builder.buildEcho(orDefault(overrides));
         ISOMsg resp = sendAndReceive(req);
         validateResponse(req, resp);
-        return IsoResponseMapper.toJson(resp);
+        return resp;
+    }
+
+    public CompletableFuture<ISOMsg> sendFinancialAsync(Map<String, String> overrides) {
+        return sendAsync(builder.build1200(orDefault(overrides)));
+    }
+
+    public CompletableFuture<ISOMsg> sendReversalAsync(Map<String, String> overrides) {
+        return sendAsync(builder.build1400(orDefault(overrides)));
+    }
+
+    public CompletableFuture<ISOMsg> sendEchoAsync(Map<String, String> overrides) {
+        try {
+            return sendAsync(builder.buildEcho(orDefault(overrides)));
+        } catch (ISOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Non-blocking counterparts of the send* methods, honouring gateway.async.enabled: the channel
+     * pool when it is on, otherwise the locked channel driven from a dispatcher thread, so callers
+     * (REST handlers) never wait on the gateway themselves.
+     */
+    public CompletableFuture<ISOMsg> submitFinancial(Map<String, String> overrides) {
+        return asyncEnabled ? sendFinancialAsync(overrides) : dispatch(() -> sendFinancial(overrides));
+    }
+
+    public CompletableFuture<ISOMsg> submitReversal(Map<String, String> overrides) {
+        return asyncEnabled ? sendReversalAsync(overrides) : dispatch(() -> sendReversal(overrides));
+    }
+
+    public CompletableFuture<ISOMsg> submitEcho(Map<String, String> overrides) {
+        return asyncEnabled ? sendEchoAsync(overrides) : dispatch(() -> sendEcho(overrides));
+    }
+
+    /**
+     * Queues the send for the dispatcher. Each exchange can hold the channel for gateway.timeout, so
+     * a deep queue would otherwise outlast the caller; requests that waited over max-wait-ms are
+     * failed with {@link NotSentException} instead.
+     */
+    private CompletableFuture<ISOMsg> dispatch(Callable<ISOMsg> send) {
+        long queuedNanos = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> {
+            if (maxWaitMs > 0 && System.nanoTime() - queuedNanos > maxWaitMs * 1_000_000L) {
+                throw new NotSentException("Waited over " + maxWaitMs + " ms for the gateway channel");
+            }
+            try {
+                return send.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, channelDispatcher);
+    }
+
+    private CompletableFuture<ISOMsg> sendAsync(ISOMsg req) {
+        traffic.record("OUT", req);
+        return pool.send(req).whenComplete((resp, err) -> {
+            if (err == null) return;
+            traffic.failure("OUT", req, err);
+            if (unanswered(err)) reversals.timedOut(req);
+        }).thenApply(resp -> {
+            traffic.record("IN", resp);
+            try {
+                validateResponse(req, resp);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+            return resp;
+        });
+    }
+
+    /**
+     * Timeouts and connections lost after the write: the request may have reached the switch.
+     * Requests that failed with {@link NotSentException} never left.
+     */
+    private static boolean unanswered(Throwable err) {
+        Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+        if (cause instanceof NotSentException) return false;
+        return cause instanceof TimeoutException || cause instanceof IOException;
     }
 
     private Map<String, String> orDefault(Map<String, String> m) {
@@ -51,29 +164,80 @@ public class ZimSwitchClientService {
     }
 
     private ISOMsg sendAndReceive(ISOMsg request) throws Exception {
-        maskAndLog("REQUEST", request);
+        traffic.record("OUT", request);
         ISOMsg response;
-        synchronized (channel) {
-            ensureConnected();
+        if (asyncEnabled) {
             try {
-                channel.send(request);
-                response = channel.receive();
-            } catch (Exception e) {
-                // Attempt one reconnect and retry once
-                log.warn("Channel send/receive error: {}. Reconnecting once...", e.getMessage());
-                reconnectSilently();
-                channel.send(request);
-                response = channel.receive();
+                response = pool.send(request).get();
+            } catch (ExecutionException e) {
+                traffic.failure("OUT", request, e.getCause());
+                if (unanswered(e.getCause())) reversals.timedOut(request);
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
             }
+            traffic.record("IN", response);
+            return response;
         }
-        maskAndLog("RESPONSE", response);
+        long start = System.nanoTime();
+        try {
+            synchronized (channel) {
+                ensureConnected();
+                try {
+                    channel.send(request);
+                } catch (Exception e) {
+                    // Not sent yet: reconnect and send once more
+                    log.warn("Channel send error: {}. Reconnecting once...", e.getMessage());
+                    reconnectSilently();
+                    channel.send(request);
+                }
+                try {
+                    response = channel.receive();
+                } catch (Exception e) {
+                    // Sent but unanswered: the switch may have processed it, so it is reversed, never re-sent.
+                    // Reconnect so a late response is not read as the answer to the next request.
+                    log.warn("Channel receive error: {}. Reversing STAN {} and reconnecting", e.getMessage(), request.getString(11));
+                    reversals.timedOut(request);
+                    try {
+                        reconnectSilently();
+                    } catch (RuntimeException ignore) { }
+                    throw e;
+                }
+            }
+        } catch (Exception e) {
+            metrics.clientCompleted(request, null, e, System.nanoTime() - start);
+            traffic.failure("OUT", request, e);
+            throw e;
+        }
+        channelActivityNanos = System.nanoTime();
+        metrics.clientCompleted(request, response, null, System.nanoTime() - start);
+        traffic.record("IN", response);
         return response;
     }
 
+    /**
+     * Time since the locked channel last received a response (not used when gateway.async.enabled).
+     */
+    public long getChannelIdleNanos() {
+        return System.nanoTime() - channelActivityNanos;
+    }
+
+    public boolean isAsyncEnabled() {
+        return asyncEnabled;
+    }
+
+    /**
+     * Drops and reopens the locked channel; waits for an exchange in progress to finish.
+     */
+    public void reconnectChannel() {
+        synchronized (channel) {
+            reconnectSilently();
+        }
+    }
+
     private void ensureConnected() throws Exception {
         if (!channel.isConnected()) {
             log.info("ISOChannel not connected. Connecting...");
             channel.connect();
+            metrics.connected("zimswitch-nac");
             log.info("ISOChannel connected");
         }
     }
@@ -84,26 +248,12 @@ public class ZimSwitchClientService {
         } catch (Exception ignore) { }
         try {
             channel.connect();
+            metrics.connected("zimswitch-nac");
         } catch (Exception ex) {
             throw new RuntimeException("Reconnect failed: " + ex.getMessage(), ex);
         }
     }
 
-    private static void maskAndLog(String label, ISOMsg m) {
-        String pan = m.hasField(2) ? m.getString(2) : null;
-        String masked = pan != null ? PanMasker.mask(pan) : null;
-        String mti = null;
-        try {
-            mti = m.getMTI();
-        } catch (ISOException e) {
-            try { mti = m.getString(0); } catch (Exception ignored) { }
-        }
-        String f3 = m.hasField(3) ? m.getString(3) : "";
-        String f4 = m.hasField(4) ? m.getString(4) : "";
-        String rrn = m.hasField(37) ? m.getString(37) : "";
-        log.info("{} MTI={} PAN={} F3={} F4={} RRN={}", label, mti, masked, f3, f4, rrn);
-    }
-
     private static void validateResponse(ISOMsg request, ISOMsg response) throws Exception {
         String reqMTI = request.getMTI();
         String expected = reqMTI.substring(0, 2) + "1" + reqMTI.substring(3);
@@ -115,4 +265,9 @@ public class ZimSwitchClientService {
             throw new IllegalStateException("Missing field 39 (Response Code) in response");
         }
     }
+
+    @Override
+    public void close() {
+        channelDispatcher.shutdownNow();
+    }
 }
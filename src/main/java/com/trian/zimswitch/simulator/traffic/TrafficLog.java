@@ -0,0 +1,222 @@
+package com.trian.zimswitch.simulator.traffic;
+
+import com.trian.zimswitch.simulator.iso.FieldRedactor;
+import com.trian.zimswitch.simulator.util.RingBuffer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jpos.iso.ISOMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous ISO traffic log. Hot-path threads build a masked summary of the message and offer it
+ * to a lock-free ring; a background writer drains it in batches to traffic.log.file. When the ring is
+ * full the entry is dropped and counted, so logging never blocks a request.
+ * <p>
+ * Modes (traffic.log.mode): full, sample (1 in traffic.log.sample-rate transactions, chosen by STAN alone
+ * so request, response and failure of an exchange are kept or dropped together), errors (failures and
+ * responses with RC other than 00), off.
+ */
+@Component
+public class TrafficLog implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(TrafficLog.class);
+
+    private final String mode;
+    private final int sampleRate;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Path file;
+    private final RingBuffer<Entry> ring;
+    private final FieldRedactor redactor;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong sampledOut = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    public TrafficLog(@Value("${traffic.log.mode:full}") String mode,
+                      @Value("${traffic.log.sample-rate:100}") int sampleRate,
+                      @Value("${traffic.log.buffer-size:65536}") int bufferSize,
+                      @Value("${traffic.log.batch-size:512}") int batchSize,
+                      @Value("${traffic.log.flush-interval-ms:200}") long flushIntervalMs,
+                      @Value("${traffic.log.file:logs/traffic.log}") String file,
+                      MeterRegistry registry,
+                      FieldRedactor redactor) {
+        this.mode = mode.toLowerCase();
+        this.sampleRate = Math.max(1, sampleRate);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMs));
+        this.file = Paths.get(file);
+        this.ring = new RingBuffer<>(bufferSize);
+        this.redactor = redactor;
+        FunctionCounter.builder("zimswitch.traffic.log.offered", offered, AtomicLong::get).register(registry);
+        FunctionCounter.builder("zimswitch.traffic.log.written", written, AtomicLong::get).register(registry);
+        FunctionCounter.builder("zimswitch.traffic.log.dropped", dropped, AtomicLong::get).register(registry);
+        FunctionCounter.builder("zimswitch.traffic.log.sampled.out", sampledOut, AtomicLong::get).register(registry);
+        Gauge.builder("zimswitch.traffic.log.queued", ring, RingBuffer::size).register(registry);
+        this.writerThread = new Thread(this::writeLoop, "traffic-log-writer");
+        this.writerThread.setDaemon(true);
+        if (!"off".equals(this.mode)) writerThread.start();
+        log.info("Traffic log: mode={} sampleRate={} buffer={} file={}", this.mode, this.sampleRate, ring.capacity(), this.file);
+    }
+
+    /**
+     * Logs a message in the given direction (e.g. OUT, IN, ACCEPT-IN, ACCEPT-OUT).
+     */
+    public void record(String direction, ISOMsg m) {
+        if ("off".equals(mode)) return;
+        boolean error = m.hasField(39) && !"00".equals(m.getString(39));
+        if (!wanted(m, error)) return;
+        enqueue(new Entry(direction, m, pan(m), null));
+    }
+
+    /**
+     * Logs a request that got no response.
+     */
+    public void failure(String direction, ISOMsg request, Throwable error) {
+        if ("off".equals(mode) || !wanted(request, true)) return;
+        enqueue(new Entry(direction, request, pan(request), error.getClass().getSimpleName() + ": " + error.getMessage()));
+    }
+
+    private String pan(ISOMsg m) {
+        String pan = redactor.redactedString(m, 2);
+        return pan != null ? pan : "";
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("mode", mode);
+        m.put("file", file.toString());
+        m.put("offered", offered.get());
+        m.put("sampledOut", sampledOut.get());
+        m.put("dropped", dropped.get());
+        m.put("written", written.get());
+        m.put("queued", ring.size());
+        return m;
+    }
+
+    private boolean wanted(ISOMsg m, boolean error) {
+        boolean keep;
+        switch (mode) {
+            case "errors":
+                keep = error;
+                break;
+            case "sample":
+                // Not error: a declined response must not be logged without its request
+                String stan = m.hasField(11) ? m.getString(11) : "";
+                keep = Math.floorMod(stan.hashCode(), sampleRate) == 0;
+                break;
+            default:
+                keep = true;
+        }
+        if (!keep) sampledOut.incrementAndGet();
+        return keep;
+    }
+
+    private void enqueue(Entry e) {
+        offered.incrementAndGet();
+        if (!ring.offer(e)) dropped.incrementAndGet();
+    }
+
+    private void writeLoop() {
+        BufferedWriter out = null;
+        while (running || ring.size() > 0) {
+            try {
+                if (out == null) {
+                    if (file.getParent() != null) Files.createDirectories(file.getParent());
+                    out = Files.newBufferedWriter(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+                BufferedWriter w = out;
+                int n = ring.drain(e -> e.writeTo(w), batchSize);
+                written.addAndGet(n);
+                if (n < batchSize) {
+                    out.flush();
+                    LockSupport.parkNanos(flushIntervalNanos);
+                }
+            } catch (IOException | java.io.UncheckedIOException e) {
+                try { if (out != null) out.close(); } catch (IOException ignore) {}
+                out = null;
+                if (!running) {
+                    log.warn("Traffic log write failed while closing ({}); {} entries lost", e.getMessage(), ring.size());
+                    return;
+                }
+                log.warn("Traffic log write failed ({}); retrying", e.getMessage());
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+        try { if (out != null) out.close(); } catch (IOException ignore) {}
+    }
+
+    /**
+     * Stops the writer once it has written what is queued.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            if (writerThread.isAlive()) writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Masked summary captured on the calling thread; formatted by the writer.
+     */
+    private static final class Entry {
+        final long timestamp = System.currentTimeMillis();
+        final String direction;
+        final String mti;
+        final String pan;
+        final String f3;
+        final String f4;
+        final String stan;
+        final String rrn;
+        final String rc;
+        final String error;
+
+        Entry(String direction, ISOMsg m, String pan, String error) {
+            this.direction = direction;
+            this.mti = m.hasField(0) ? m.getString(0) : "";
+            this.pan = pan;
+            this.f3 = m.hasField(3) ? m.getString(3) : "";
+            this.f4 = m.hasField(4) ? m.getString(4) : "";
+            this.stan = m.hasField(11) ? m.getString(11) : "";
+            this.rrn = m.hasField(37) ? m.getString(37) : "";
+            this.rc = m.hasField(39) ? m.getString(39) : "";
+            this.error = error;
+        }
+
+        void writeTo(BufferedWriter w) {
+            try {
+                w.write(Instant.ofEpochMilli(timestamp).toString());
+                w.write(' ');
+                w.write(direction);
+                w.write(" MTI=" + mti + " PAN=" + pan + " F3=" + f3 + " F4=" + f4 + " F11=" + stan + " RRN=" + rrn + " RC=" + rc);
+                if (error != null) w.write(" ERROR=" + error);
+                w.newLine();
+            } catch (IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.trian.zimswitch.simulator.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timer wheel: one thread advances a ring of buckets every tick and hands due tasks to an
+ * executor. Scheduling is a lock-free queue add, so thousands of pending timeouts cost memory
+ * only, not threads. Precision is one tick; tasks never fire early.
+ */
+public final class HashedTimerWheel implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(HashedTimerWheel.class);
+
+    private final long tickNanos;
+    private final int mask;
+    private final Queue<Timeout>[] wheel;
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final Executor dispatcher;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean running = true;
+
+    /**
+     * @param wheelSize number of buckets, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimerWheel(String name, long tickNanos, int wheelSize, Executor dispatcher) {
+        this.tickNanos = Math.max(100_000, tickNanos);
+        int size = Integer.highestOneBit(Math.max(2, wheelSize) * 2 - 1);
+        this.mask = size - 1;
+        this.wheel = new Queue[size];
+        for (int i = 0; i < size; i++) wheel[i] = new ArrayDeque<>();
+        this.dispatcher = dispatcher;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Runs the task on the dispatcher once delayNanos have elapsed (rounded up to the next tick).
+     */
+    public void schedule(long delayNanos, Runnable task) {
+        if (!running) throw new IllegalStateException("Timer wheel stopped");
+        pending.incrementAndGet();
+        incoming.add(new Timeout(System.nanoTime() + Math.max(0, delayNanos), task));
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    private void run() {
+        long tick = 0;
+        while (running) {
+            long tickDeadline = startNanos + (tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) < tickDeadline) {
+                LockSupport.parkNanos(tickDeadline - now);
+                if (!running) return;
+            }
+            transfer(tick);
+            expire(wheel[(int) (tick & mask)], now);
+            tick++;
+        }
+    }
+
+    private void transfer(long tick) {
+        Timeout t;
+        while ((t = incoming.poll()) != null) {
+            long ticks = (t.deadline - startNanos + tickNanos - 1) / tickNanos - 1;
+            if (ticks < tick) ticks = tick;
+            t.rounds = (ticks - tick) / wheel.length;
+            wheel[(int) (ticks & mask)].add(t);
+        }
+    }
+
+    private void expire(Queue<Timeout> bucket, long now) {
+        for (int n = bucket.size(); n > 0; n--) {
+            Timeout t = bucket.poll();
+            if (t.rounds > 0) {
+                t.rounds--;
+                bucket.add(t);
+                continue;
+            }
+            pending.decrementAndGet();
+            try {
+                dispatcher.execute(t.task);
+            } catch (RuntimeException e) {
+                log.warn("Timer task rejected: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    private static final class Timeout {
+        final long deadline;
+        final Runnable task;
+        long rounds;
+
+        Timeout(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.trian.zimswitch.simulator.util;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * UTC clock fields for ISO messages, rendered at most once per second and shared by all callers.
+ * Every message in the same second carries identical date/time fields, so there is no point
+ * formatting them again per message.
+ */
+public final class IsoClock {
+
+    /**
+     * Pre-rendered date/time fields for one UTC second.
+     */
+    public static final class Tick {
+        public final long epochSecond;
+        /** Field 7, MMddHHmmss */
+        public final String transmission;
+        /** Field 12, HHmmss */
+        public final String time;
+        /** Field 13, MMdd */
+        public final String date;
+
+        private Tick(long epochSecond) {
+            this.epochSecond = epochSecond;
+            ZonedDateTime t = Instant.ofEpochSecond(epochSecond).atZone(ZoneOffset.UTC);
+            char[] c = new char[10];
+            put2(c, 0, t.getMonthValue());
+            put2(c, 2, t.getDayOfMonth());
+            put2(c, 4, t.getHour());
+            put2(c, 6, t.getMinute());
+            put2(c, 8, t.getSecond());
+            this.transmission = new String(c);
+            this.time = transmission.substring(4);
+            this.date = transmission.substring(0, 4);
+        }
+    }
+
+    private static volatile Tick current = new Tick(System.currentTimeMillis() / 1000);
+
+    private IsoClock() {}
+
+    public static Tick now() {
+        long sec = System.currentTimeMillis() / 1000;
+        Tick t = current;
+        if (t.epochSecond != sec) {
+            // Racing threads may each render the new second; they produce equal ticks, so last write wins
+            t = new Tick(sec);
+            current = t;
+        }
+        return t;
+    }
+
+    /**
+     * Zero-padded 6-digit rendering of 0..999999 without String.format.
+     */
+    public static String pad6(int v) {
+        char[] c = new char[6];
+        for (int i = 5; i >= 0; i--) {
+            c[i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        return new String(c);
+    }
+
+    private static void put2(char[] c, int off, int v) {
+        c[off] = (char) ('0' + v / 10);
+        c[off + 1] = (char) ('0' + v % 10);
+    }
+}
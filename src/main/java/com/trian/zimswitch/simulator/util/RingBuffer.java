@@ -0,0 +1,77 @@
+package com.trian.zimswitch.simulator.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free multi-producer ring (Vyukov's sequence-per-slot scheme). {@link #offer} never
+ * blocks: it returns false when the ring is full so the caller can count a drop. Intended for a
+ * single consumer calling {@link #drain}.
+ */
+public final class RingBuffer<E> {
+    private final int mask;
+    private final AtomicReferenceArray<E> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.mask = size - 1;
+        this.items = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+    }
+
+    public boolean offer(E e) {
+        while (true) {
+            long pos = tail.get();
+            int idx = (int) (pos & mask);
+            long diff = sequences.get(idx) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    items.lazySet(idx, e);
+                    sequences.set(idx, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false; // full
+            }
+            // else another producer claimed this slot; retry with the new tail
+        }
+    }
+
+    /**
+     * Hands up to max items to the consumer, oldest first.
+     *
+     * @return number of items drained
+     */
+    public int drain(Consumer<E> consumer, int max) {
+        int n = 0;
+        while (n < max) {
+            long pos = head.get();
+            int idx = (int) (pos & mask);
+            if (sequences.get(idx) != pos + 1) break; // empty, or the producer has not published yet
+            E e = items.get(idx);
+            items.lazySet(idx, null);
+            sequences.set(idx, pos + mask + 1);
+            head.set(pos + 1);
+            consumer.accept(e);
+            n++;
+        }
+        return n;
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
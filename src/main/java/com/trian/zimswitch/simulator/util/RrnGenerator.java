@@ -0,0 +1,73 @@
+package com.trian.zimswitch.simulator.util;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 12-digit RRNs, unique per UTC day: day of year (3 digits) followed by a 9-digit daily sequence.
+ * The sequence is striped like {@link StanGenerator} and starts at the second of the day times
+ * 10,000. Each stripe steps by {@value StanGenerator#STRIPES}, so a restart later the same day does
+ * not reissue earlier numbers unless one stripe of the previous run (typically a single sender
+ * thread) averaged more than 10,000 / 16 = 625 RRNs per second. A larger base would not help: the
+ * 9-digit daily sequence holds 86,400 seconds of 10,000 numbers and no more.
+ */
+public final class RrnGenerator {
+    private static final int STRIPES = StanGenerator.STRIPES;
+    private static final int PAD = 8;
+    private static final long SEQUENCE_SPACE = 1_000_000_000L;
+
+    /**
+     * Sequence state for one UTC day; replaced when the day rolls over.
+     */
+    private static final class Day {
+        final long epochDay;
+        final long base;
+        final char[] prefix;
+        final AtomicLongArray counters = new AtomicLongArray(STRIPES * PAD);
+
+        Day(long epochSecond) {
+            this.epochDay = epochSecond / 86_400;
+            this.base = (epochSecond % 86_400) * 10_000;
+            int dayOfYear = LocalDate.ofEpochDay(epochDay).getDayOfYear();
+            this.prefix = new char[3];
+            render(dayOfYear, prefix, 0, 3);
+        }
+    }
+
+    private static volatile Day current = new Day(System.currentTimeMillis() / 1000);
+
+    private RrnGenerator() {}
+
+    public static String nextRrn() {
+        long sec = IsoClock.now().epochSecond;
+        Day d = current;
+        if (d.epochDay != sec / 86_400) {
+            synchronized (RrnGenerator.class) {
+                d = current;
+                if (d.epochDay != sec / 86_400) {
+                    d = new Day(sec);
+                    current = d;
+                }
+            }
+        }
+        int stripe = StanGenerator.stripe();
+        long k = d.counters.getAndIncrement(stripe * PAD);
+        long seq = (d.base + stripe + STRIPES * k) % SEQUENCE_SPACE;
+        char[] c = new char[12];
+        c[0] = d.prefix[0];
+        c[1] = d.prefix[1];
+        c[2] = d.prefix[2];
+        render(seq, c, 3, 9);
+        return new String(c);
+    }
+
+    /**
+     * Writes v as width zero-padded decimal digits at c[off].
+     */
+    static void render(long v, char[] c, int off, int width) {
+        for (int i = off + width - 1; i >= off; i--) {
+            c[i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+    }
+}
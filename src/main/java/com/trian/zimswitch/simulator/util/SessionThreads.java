@@ -0,0 +1,84 @@
+package com.trian.zimswitch.simulator.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for acceptor sessions: a cached platform-thread pool, or one virtual thread per task,
+ * plus the bounded worker pools requests are processed on.
+ * The build targets Java 17, so the virtual-thread executor is looked up reflectively and only
+ * used when running on Java 21+; otherwise "virtual" falls back to platform threads with a warning.
+ */
+public final class SessionThreads {
+    private static final Logger log = LoggerFactory.getLogger(SessionThreads.class);
+
+    private static final MethodHandle VIRTUAL_PER_TASK = lookupVirtualPerTask();
+
+    private SessionThreads() {}
+
+    public static boolean isVirtualAvailable() {
+        return VIRTUAL_PER_TASK != null;
+    }
+
+    /**
+     * @param mode "virtual" or "platform"
+     */
+    public static ExecutorService newExecutor(String mode, String namePrefix) {
+        if ("virtual".equalsIgnoreCase(mode)) {
+            if (VIRTUAL_PER_TASK != null) {
+                try {
+                    return (ExecutorService) VIRTUAL_PER_TASK.invoke();
+                } catch (Throwable t) {
+                    log.warn("Could not create virtual-thread executor for {}: {}", namePrefix, t.getMessage());
+                }
+            } else {
+                log.warn("Virtual threads need Java 21+ (running {}); {} uses platform threads",
+                        System.getProperty("java.version"), namePrefix);
+            }
+        }
+        return Executors.newCachedThreadPool(daemonFactory(namePrefix));
+    }
+
+    /**
+     * Fixed pool of daemon threads with a bounded queue; submissions beyond it are rejected with
+     * {@link java.util.concurrent.RejectedExecutionException} instead of piling up.
+     */
+    public static ExecutorService newWorkerPool(int threads, int queueCapacity, String namePrefix) {
+        int n = Math.max(1, threads);
+        return new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), daemonFactory(namePrefix));
+    }
+
+    public static boolean isVirtual(String mode) {
+        return "virtual".equalsIgnoreCase(mode) && VIRTUAL_PER_TASK != null;
+    }
+
+    public static ThreadFactory daemonFactory(String namePrefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, namePrefix + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private static MethodHandle lookupVirtualPerTask() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -1,18 +1,34 @@
 package com.trian.zimswitch.simulator.util;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * STAN allocator with striped counters. The STAN space 1..999999 is split into {@value #STRIPES}
+ * residue classes; each stripe counts through its own class, and a thread always uses the same
+ * stripe, so concurrent senders rarely touch the same counter. A STAN comes round again only
+ * after its stripe has issued 62,499 others, far more than can be in flight per terminal.
+ */
 public final class StanGenerator {
-    private static final AtomicInteger COUNTER = new AtomicInteger(1);
+    static final int STRIPES = 16;
+    private static final int PER_STRIPE = 999_999 / STRIPES;
+    // Counters 8 longs (one cache line) apart so stripes do not false-share
+    private static final int PAD = 8;
+    private static final AtomicLongArray COUNTERS = new AtomicLongArray(STRIPES * PAD);
 
     private StanGenerator() {}
 
     /**
-     * Generates a 6-digit numeric STAN (1..999999) rolling over.
+     * Generates a 6-digit numeric STAN in 1..999999. The calling thread only sees its own stripe, so
+     * its STANs repeat every 62,499 calls, not every 999,999.
      */
     public static String nextStan() {
-        int val = COUNTER.getAndUpdate(prev -> prev >= 999999 ? 1 : prev + 1);
-        return String.format("%06d", val);
+        int stripe = stripe();
+        long k = COUNTERS.getAndIncrement(stripe * PAD) % PER_STRIPE;
+        return IsoClock.pad6((int) (stripe + STRIPES * k + 1));
     }
-}
 
+    static int stripe() {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 60) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,158 @@
+package com.trian.zimswitch.simulator.framing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FrameCodecTest {
+    private static final byte[] TPDU = {0x60, 0x00, 0x01, 0x00, 0x00};
+    private static final byte[] BODY = "1200ISO-MESSAGE-BODY".getBytes(StandardCharsets.US_ASCII);
+
+    private static FrameCodec codec(LengthFormat format, int bufferSize) {
+        return new FrameCodec(format, TPDU, TPDU.length, new BufferPool(bufferSize, 4, false));
+    }
+
+    @Test
+    void writeThenReadRoundTripsInEveryFormat() throws IOException {
+        for (LengthFormat format : LengthFormat.values()) {
+            FrameCodec codec = codec(format, 256);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            codec.write(out, BODY);
+            codec.write(out, BODY);
+            byte[] wire = out.toByteArray();
+            assertThat(wire).hasSize(2 * (format.size() + TPDU.length + BODY.length));
+            assertThat(format.decode(ByteBuffer.wrap(wire), 0)).isEqualTo(TPDU.length + BODY.length);
+
+            InputStream in = new ByteArrayInputStream(wire);
+            for (int i = 0; i < 2; i++) {
+                ByteBuffer frame = codec.read(in);
+                assertThat(frame).as(format.name()).isNotNull();
+                assertThat(frame.position()).isZero();
+                assertThat(frame.limit()).isEqualTo(TPDU.length + BODY.length);
+                assertThat(bytes(frame)).isEqualTo(concat(TPDU, BODY));
+                codec.release(frame);
+            }
+            assertThat(codec.read(in)).isNull();
+        }
+    }
+
+    @Test
+    void encodeMatchesWrite() throws IOException {
+        FrameCodec codec = codec(LengthFormat.ASCII4, 256);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.write(out, BODY);
+        ByteArrayOutputStream gathered = new ByteArrayOutputStream();
+        for (ByteBuffer b : codec.encode(BODY)) gathered.write(bytes(b));
+        assertThat(gathered.toByteArray()).isEqualTo(out.toByteArray());
+    }
+
+    @Test
+    void readAssemblesFramesDeliveredOneByteAtATime() throws IOException {
+        FrameCodec codec = codec(LengthFormat.BINARY2, 256);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.write(out, BODY);
+        InputStream trickle = new FilterInputStream(new ByteArrayInputStream(out.toByteArray())) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(1, len));
+            }
+        };
+        ByteBuffer frame = codec.read(trickle);
+        assertThat(bytes(frame)).isEqualTo(concat(TPDU, BODY));
+    }
+
+    @Test
+    void streamEndingMidFrameIsAnError() throws IOException {
+        FrameCodec codec = codec(LengthFormat.BINARY2, 256);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.write(out, BODY);
+        byte[] wire = out.toByteArray();
+        assertThatThrownBy(() -> codec.read(new ByteArrayInputStream(Arrays.copyOf(wire, wire.length - 1))))
+                .isInstanceOf(EOFException.class);
+        assertThatThrownBy(() -> codec.read(new ByteArrayInputStream(Arrays.copyOf(wire, 1))))
+                .isInstanceOf(EOFException.class);
+    }
+
+    @Test
+    void framesLargerThanThePooledBuffersGetAOneOffBuffer() throws IOException {
+        BufferPool pool = new BufferPool(64, 4, false);
+        FrameCodec codec = new FrameCodec(LengthFormat.BINARY2, new byte[0], 0, pool);
+        byte[] big = new byte[1000];
+        Arrays.fill(big, (byte) 'A');
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.write(out, big);
+
+        ByteBuffer frame = codec.read(new ByteArrayInputStream(out.toByteArray()));
+        assertThat(frame.capacity()).isGreaterThanOrEqualTo(1000);
+        assertThat(bytes(frame)).isEqualTo(big);
+        codec.release(frame);
+        // Only buffers of the pooled size go back on the free list
+        assertThat(pool.stats().get("pooled")).isEqualTo(1);
+    }
+
+    @Test
+    void bodiesBeyondTheLengthHeaderAreRefused() {
+        FrameCodec codec = codec(LengthFormat.ASCII4, 256);
+        byte[] body = new byte[LengthFormat.ASCII4.maxLength() - TPDU.length + 1];
+        assertThatThrownBy(() -> codec.write(new ByteArrayOutputStream(), body)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> codec.encode(body)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void frameLengthWaitsForACompleteHeaderAndTakeConsumesOneFrame() throws IOException {
+        FrameCodec codec = codec(LengthFormat.BCD2, 256);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.write(out, BODY);
+        codec.write(out, BODY);
+        byte[] wire = out.toByteArray();
+
+        ByteBuffer partial = ByteBuffer.wrap(wire, 0, 1);
+        assertThat(codec.frameLength(partial)).isEqualTo(-1);
+
+        ByteBuffer in = ByteBuffer.wrap(wire);
+        int len = codec.frameLength(in);
+        assertThat(len).isEqualTo(TPDU.length + BODY.length);
+        assertThat(in.position()).isZero();
+        ByteBuffer first = codec.take(in, len);
+        assertThat(bytes(first)).isEqualTo(concat(TPDU, BODY));
+        assertThat(in.position()).isEqualTo(wire.length / 2);
+        assertThat(codec.frameLength(in)).isEqualTo(len);
+    }
+
+    @Test
+    void directPoolsAreRejected() {
+        assertThatThrownBy(() -> new FrameCodec(LengthFormat.BINARY2, TPDU, 0, new BufferPool(64, 1, true)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void headerParsing() {
+        assertThat(FrameCodec.header("600001")).containsExactly(0x60, 0x00, 0x01);
+        assertThat(FrameCodec.header("none")).isEmpty();
+        assertThat(FrameCodec.header(" ")).isEmpty();
+        assertThat(FrameCodec.header("-")).isEmpty();
+    }
+
+    private static byte[] bytes(ByteBuffer b) {
+        byte[] out = new byte[b.remaining()];
+        b.duplicate().get(out);
+        return out;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] out = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+}
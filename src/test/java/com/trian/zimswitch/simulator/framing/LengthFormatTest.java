@@ -0,0 +1,51 @@
+package com.trian.zimswitch.simulator.framing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LengthFormatTest {
+
+    @Test
+    void everyFormatRoundTrips() throws IOException {
+        for (LengthFormat f : LengthFormat.values()) {
+            for (int len : new int[]{0, 1, 9, 10, 99, 100, 1234, 9999, f.maxLength()}) {
+                byte[] b = new byte[f.size() + 2];
+                f.encode(len, b, 1);
+                assertThat(f.decode(ByteBuffer.wrap(b), 1)).as("%s %d", f, len).isEqualTo(len);
+            }
+        }
+    }
+
+    @Test
+    void encodingsMatchTheWire() {
+        byte[] b = new byte[4];
+        LengthFormat.BINARY2.encode(0x0123, b, 0);
+        assertThat(b).startsWith(0x01, 0x23);
+        LengthFormat.ASCII4.encode(123, b, 0);
+        assertThat(b).containsExactly('0', '1', '2', '3');
+        LengthFormat.BCD2.encode(1234, b, 0);
+        assertThat(b).startsWith(0x12, 0x34);
+    }
+
+    @Test
+    void malformedHeadersAreRejected() {
+        assertThatThrownBy(() -> LengthFormat.ASCII4.decode(ByteBuffer.wrap(new byte[]{'0', '1', 'x', '3'}), 0))
+                .isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> LengthFormat.BCD2.decode(ByteBuffer.wrap(new byte[]{0x1A, 0x00}), 0))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void namesAndAliases() {
+        assertThat(LengthFormat.of("nac")).isEqualTo(LengthFormat.BINARY2);
+        assertThat(LengthFormat.of(" Binary ")).isEqualTo(LengthFormat.BINARY2);
+        assertThat(LengthFormat.of("ascii4")).isEqualTo(LengthFormat.ASCII4);
+        assertThat(LengthFormat.of("BCD")).isEqualTo(LengthFormat.BCD2);
+        assertThatThrownBy(() -> LengthFormat.of("ebcdic")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,96 @@
+package com.trian.zimswitch.simulator.iso;
+
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOPackager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompiledIsoPackagerTest {
+    private ISOPackager generic;
+    private CompiledIsoPackager compiled;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        generic = IsoPackagerFactory.create("generic", "classpath");
+        compiled = (CompiledIsoPackager) IsoPackagerFactory.create("compiled", "classpath");
+    }
+
+    private ISOMsg sample() throws ISOException {
+        ISOMsg m = new ISOMsg();
+        m.setMTI("1200");
+        m.set(2, "4929390123456781");
+        m.set(3, "000000");
+        m.set(4, "000000001000");
+        m.set(7, "1017123456");
+        m.set(11, "000123");
+        m.set(12, "261017123456");
+        m.set(37, "101712000123");
+        m.set(41, "TERM1234");
+        m.set(42, "MRC123456789012");
+        m.set(49, "932");
+        m.set(52, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        m.set(70, "301");
+        m.recalcBitMap();
+        return m;
+    }
+
+    @Test
+    void codecsAreActiveForTheShippedDefinition() {
+        assertThat(compiled.isActive()).isTrue();
+    }
+
+    @Test
+    void packMatchesGenericPackager() throws ISOException {
+        ISOMsg m = sample();
+        assertThat(compiled.pack(m)).isEqualTo(generic.pack(m));
+    }
+
+    @Test
+    void packRejectsFieldsBeyondTheDefinitionLikeGenericPackager() throws ISOException {
+        ISOMsg m = sample();
+        m.set(130, "X");
+        assertThatThrownBy(() -> generic.pack(m)).isInstanceOf(ISOException.class);
+        assertThatThrownBy(() -> compiled.pack(m)).isInstanceOf(ISOException.class);
+    }
+
+    @Test
+    void unpackFromTheMiddleOfABufferMatchesGenericPackager() throws ISOException {
+        byte[] packed = generic.pack(sample());
+        byte[] frame = new byte[packed.length + 12];
+        Arrays.fill(frame, (byte) 0x5A);
+        System.arraycopy(packed, 0, frame, 7, packed.length);
+
+        ISOMsg expected = new ISOMsg();
+        generic.unpack(expected, packed);
+        ISOMsg actual = new ISOMsg();
+        int consumed = compiled.unpack(actual, frame, 7, packed.length);
+
+        assertThat(consumed).isEqualTo(packed.length);
+        assertThat(actual.getMaxField()).isEqualTo(expected.getMaxField());
+        for (int i = 0; i <= expected.getMaxField(); i++) {
+            if (i == 1) continue; // bitmap
+            assertThat(actual.hasField(i)).as("field %d present", i).isEqualTo(expected.hasField(i));
+            if (expected.hasField(i)) {
+                assertThat(actual.getBytes(i)).as("field %d", i).isEqualTo(expected.getBytes(i));
+            }
+        }
+    }
+
+    @Test
+    void unpackStopsAtTheGivenLength() throws ISOException {
+        byte[] packed = generic.pack(sample());
+        byte[] frame = new byte[packed.length + 4];
+        System.arraycopy(packed, 0, frame, 4, packed.length);
+
+        assertThatThrownBy(() -> compiled.unpack(new ISOMsg(), frame, 4, packed.length - 2))
+                .isInstanceOf(ISOException.class);
+        assertThatThrownBy(() -> compiled.unpack(new ISOMsg(), frame, 4, 10))
+                .isInstanceOf(ISOException.class);
+    }
+}
@@ -0,0 +1,156 @@
+package com.trian.zimswitch.simulator.iso;
+
+import com.trian.zimswitch.simulator.iso.FieldRedactor.Policy;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOPackager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FieldRedactorTest {
+    private static final String PAN = "4929390123456781";
+    private static final String TRACK2 = PAN + "=29121010000000000000";
+
+    private ISOPackager packager;
+    private FieldRedactor redactor;
+    // Policies pinned by override so the masking tests do not depend on field names
+    private FieldRedactor masking;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        packager = IsoPackagerFactory.create("generic", "classpath");
+        redactor = new FieldRedactor(packager, "");
+        masking = new FieldRedactor(packager, "2:pan,4:none,14:hide,35:track,52:hide");
+    }
+
+    @Test
+    void policiesFollowFieldNames() {
+        assertThat(FieldRedactor.fromName("PAN - PRIMARY ACCOUNT NUMBER")).isEqualTo(Policy.PAN);
+        assertThat(FieldRedactor.fromName("TRACK 2 DATA")).isEqualTo(Policy.TRACK);
+        assertThat(FieldRedactor.fromName("PIN DATA")).isEqualTo(Policy.HIDE);
+        assertThat(FieldRedactor.fromName("DATE, EXPIRATION YYMM")).isEqualTo(Policy.HIDE);
+        assertThat(FieldRedactor.fromName("ICC Data")).isEqualTo(Policy.HIDE);
+        assertThat(FieldRedactor.fromName("Message authentication code field")).isEqualTo(Policy.HIDE);
+        assertThat(FieldRedactor.fromName("AMOUNT, TRANSACTION")).isEqualTo(Policy.NONE);
+        assertThat(FieldRedactor.fromName(null)).isEqualTo(Policy.NONE);
+    }
+
+    @Test
+    void shippedDefinitionMarksTheSensitiveFields() {
+        assertThat(redactor.policy(2)).isEqualTo(Policy.PAN);
+        assertThat(redactor.policy(14)).isEqualTo(Policy.HIDE);
+        assertThat(redactor.policy(35)).isEqualTo(Policy.TRACK);
+        assertThat(redactor.policy(52)).isEqualTo(Policy.HIDE);
+        assertThat(redactor.policy(55)).isEqualTo(Policy.HIDE);
+        assertThat(redactor.policy(64)).isEqualTo(Policy.HIDE);
+        assertThat(redactor.policy(4)).isEqualTo(Policy.NONE);
+        assertThat(redactor.policy(-1)).isEqualTo(Policy.NONE);
+        assertThat(redactor.policy(500)).isEqualTo(Policy.NONE);
+        assertThat(redactor.policies()).containsKeys(2, 14, 35, 52, 55, 64).doesNotContainKey(4);
+    }
+
+    @Test
+    void overridesReplaceDerivedPolicies() {
+        FieldRedactor r = new FieldRedactor(packager, "48:hide, 2:none ,");
+        assertThat(r.policy(48)).isEqualTo(Policy.HIDE);
+        assertThat(r.policy(2)).isEqualTo(Policy.NONE);
+        assertThat(r.isSensitive(48)).isTrue();
+        assertThat(r.isSensitive(2)).isFalse();
+    }
+
+    @Test
+    void malformedOverridesAreRejected() {
+        assertThatThrownBy(() -> new FieldRedactor(packager, "48")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new FieldRedactor(packager, "0:hide")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new FieldRedactor(packager, "193:hide")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new FieldRedactor(packager, "48:blur")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new FieldRedactor(packager, "x:hide")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void panKeepsFirstSixAndLastFour() {
+        assertThat(masking.redact(2, PAN).toString()).isEqualTo("492939XXXXXX6781");
+        assertThat(masking.redact(2, "4929 3901 2345 6781").toString()).isEqualTo("4929 39XX XXXX 6781");
+        // Too short to be a PAN worth masking
+        assertThat(masking.redact(2, "1234567890").toString()).isEqualTo("1234567890");
+    }
+
+    @Test
+    void trackMasksThePanAndEverythingAfterTheSeparator() {
+        assertThat(masking.redact(35, TRACK2).toString()).isEqualTo("492939XXXXXX6781=" + "X".repeat(20));
+        assertThat(masking.redact(35, "B" + PAN + "^DOE/JOHN^2912").toString())
+                .isEqualTo("B492939XXXXXX6781^XXXXXXXX^XXXX");
+    }
+
+    @Test
+    void hiddenAndBinaryValuesKeepTheirLength() {
+        assertThat(masking.redact(14, "2912").toString()).isEqualTo("XXXX");
+        assertThat(masking.redact(52, new byte[]{0x12, (byte) 0xAB}).toString()).isEqualTo("XXXX");
+        assertThat(masking.redact(4, new byte[]{0x12, (byte) 0xAB}).toString()).isEqualTo("12AB");
+        assertThat(masking.redact(4, "000000001000").toString()).isEqualTo("000000001000");
+    }
+
+    @Test
+    void redactedCopyLeavesTheOriginalAlone() throws ISOException {
+        ISOMsg m = sample();
+        ISOMsg copy = redactor.redactedCopy(m);
+
+        assertThat(copy.getString(2)).isEqualTo("492939XXXXXX6781");
+        assertThat(copy.getString(35)).startsWith("492939XXXXXX6781=").doesNotContain("2912");
+        assertThat(copy.getBytes(52)).containsOnly(0);
+        assertThat(copy.getString(4)).isEqualTo("000000001000");
+        assertThat(m.getString(2)).isEqualTo(PAN);
+        assertThat(m.getBytes(52)).isEqualTo(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertThat(redactor.redactedString(m, 2)).isEqualTo("492939XXXXXX6781");
+        assertThat(redactor.redactedString(m, 4)).isEqualTo("000000001000");
+        assertThat(redactor.redactedString(m, 52)).isEqualTo("X".repeat(16));
+        assertThat(redactor.redactedString(m, 48)).isNull();
+    }
+
+    @Test
+    void redactFrameMasksTheBodyBehindTheOriginalHeader() throws ISOException {
+        byte[] header = {0x60, 0x00, 0x01, 0x00, 0x00};
+        byte[] body = packager.pack(sample());
+        byte[] b = new byte[3 + header.length + body.length];
+        System.arraycopy(header, 0, b, 3, header.length);
+        System.arraycopy(body, 0, b, 3 + header.length, body.length);
+
+        byte[] out = redactor.redactFrame(b, 3, header.length + body.length, header.length);
+        assertThat(out).isNotNull().startsWith(header);
+        ISOMsg m = new ISOMsg();
+        packager.unpack(m, Arrays.copyOfRange(out, header.length, out.length));
+        assertThat(m.getString(2)).isEqualTo("492939XXXXXX6781");
+        assertThat(m.getString(11)).isEqualTo("000123");
+        assertThat(m.getBytes(52)).containsOnly(0);
+    }
+
+    @Test
+    void redactFrameGivesUpOnFramesItCannotRead() {
+        // 1200 with a bitmap announcing fields the frame does not carry
+        byte[] b = new byte[12];
+        Arrays.fill(b, (byte) 0x7F);
+        System.arraycopy("1200".getBytes(StandardCharsets.US_ASCII), 0, b, 0, 4);
+        assertThat(redactor.redactFrame(b, 0, b.length, -1)).isNull();
+        assertThat(redactor.redactFrame(b, 0, b.length, 13)).isNull();
+        assertThat(redactor.redactFrame(b, 0, b.length, 0)).isNull();
+    }
+
+    private static ISOMsg sample() throws ISOException {
+        ISOMsg m = new ISOMsg();
+        m.setMTI("1200");
+        m.set(2, PAN);
+        m.set(3, "000000");
+        m.set(4, "000000001000");
+        m.set(11, "000123");
+        m.set(35, TRACK2);
+        m.set(41, "TERM1234");
+        m.set(52, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        return m;
+    }
+}
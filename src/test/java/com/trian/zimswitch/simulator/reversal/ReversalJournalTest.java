@@ -0,0 +1,135 @@
+package com.trian.zimswitch.simulator.reversal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReversalJournalTest {
+    @TempDir
+    Path dir;
+
+    private static byte[] msg(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private Path segment(int index) {
+        return dir.resolve(String.format("reversals-%08d.rvj", index));
+    }
+
+    @Test
+    void openEntriesAndAttemptsSurviveARestart() throws IOException {
+        try (ReversalJournal journal = new ReversalJournal(dir, 4096, false)) {
+            assertThat(journal.recovered()).isEmpty();
+            ReversalJournal.Entry a = journal.enqueue(msg("1420-a"));
+            ReversalJournal.Entry b = journal.enqueue(msg("1420-b"));
+            journal.enqueue(msg("1420-c"));
+            journal.attempted(a);
+            journal.attempted(a);
+            journal.attempted(b);
+            journal.done(b, "00");
+            assertThat(journal.stats()).containsEntry("open", 2);
+        }
+
+        try (ReversalJournal journal = new ReversalJournal(dir, 4096, false)) {
+            List<ReversalJournal.Entry> recovered = journal.recovered();
+            assertThat(recovered).extracting(e -> e.id).containsExactly(1L, 3L);
+            assertThat(recovered.get(0).message).isEqualTo(msg("1420-a"));
+            assertThat(recovered.get(0).getAttempts()).isEqualTo(2);
+            assertThat(recovered.get(1).message).isEqualTo(msg("1420-c"));
+            assertThat(recovered.get(1).getAttempts()).isZero();
+            // Ids carry on after the highest one replayed
+            assertThat(journal.enqueue(msg("1420-d")).id).isEqualTo(4L);
+            assertThat(journal.stats()).containsEntry("open", 3);
+        }
+    }
+
+    @Test
+    void notSentTakesBackTheAttemptInMemoryOnly() throws IOException {
+        try (ReversalJournal journal = new ReversalJournal(dir, 4096, false)) {
+            ReversalJournal.Entry e = journal.enqueue(msg("1420"));
+            journal.attempted(e);
+            journal.notSent(e);
+            assertThat(e.getAttempts()).isZero();
+            journal.notSent(e);
+            assertThat(e.getAttempts()).isZero();
+        }
+        // The attempt record stays, so after a restart the entry goes out as a repeat
+        try (ReversalJournal journal = new ReversalJournal(dir, 4096, false)) {
+            assertThat(journal.recovered().get(0).getAttempts()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void drainedSegmentsAreDeleted() throws IOException {
+        byte[] payload = new byte[20];
+        // Small segments hold a single enqueue record each
+        try (ReversalJournal journal = new ReversalJournal(dir, 64, false)) {
+            ReversalJournal.Entry e1 = journal.enqueue(payload);
+            ReversalJournal.Entry e2 = journal.enqueue(payload);
+            ReversalJournal.Entry e3 = journal.enqueue(payload);
+            assertThat(segment(1)).exists();
+            assertThat(segment(2)).exists();
+            assertThat(segment(3)).exists();
+
+            journal.done(e2, "00");
+            // Segment 1 still holds an open entry, so nothing can go yet
+            assertThat(segment(1)).exists();
+            assertThat(segment(2)).exists();
+
+            journal.done(e1, "00");
+            assertThat(segment(1)).doesNotExist();
+            assertThat(segment(2)).doesNotExist();
+            assertThat(segment(3)).exists();
+            assertThat(journal.stats()).containsEntry("open", 1);
+
+            journal.done(e3, "00");
+            assertThat(journal.stats()).containsEntry("open", 0).containsEntry("segmentsWithOpenEntries", 0);
+        }
+
+        try (ReversalJournal journal = new ReversalJournal(dir, 64, false)) {
+            assertThat(journal.recovered()).isEmpty();
+        }
+    }
+
+    @Test
+    void replayStopsAtATruncatedRecord() throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(64);
+        b.putInt(ReversalJournal.MAGIC).putShort(ReversalJournal.VERSION);
+        b.put(ReversalJournal.ENQUEUED).putLong(7).putInt(3).put(msg("abc"));
+        // Second record claims more payload than the file holds
+        b.put(ReversalJournal.ENQUEUED).putLong(8).putInt(40).put(msg("de"));
+        Files.write(segment(1), Arrays.copyOf(b.array(), b.position()));
+
+        try (ReversalJournal journal = new ReversalJournal(dir, 4096, false)) {
+            assertThat(journal.recovered()).extracting(e -> e.id).containsExactly(7L);
+            assertThat(journal.recovered().get(0).message).isEqualTo(msg("abc"));
+            assertThat(journal.enqueue(msg("next")).id).isEqualTo(8L);
+        }
+    }
+
+    @Test
+    void filesThatAreNotSegmentsAreSkipped() throws IOException {
+        Files.write(segment(1), msg("not a journal"));
+        try (ReversalJournal journal = new ReversalJournal(dir, 4096, false)) {
+            assertThat(journal.recovered()).isEmpty();
+            assertThat(journal.enqueue(msg("1420")).id).isEqualTo(1L);
+        }
+    }
+
+    @Test
+    void appendingAfterCloseFails() throws IOException {
+        ReversalJournal journal = new ReversalJournal(dir, 4096, false);
+        journal.close();
+        assertThatThrownBy(() -> journal.enqueue(msg("1420"))).isInstanceOf(IOException.class);
+    }
+}
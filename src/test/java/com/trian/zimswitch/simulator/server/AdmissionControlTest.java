@@ -0,0 +1,123 @@
+package com.trian.zimswitch.simulator.server;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControlTest {
+    private SimpleMeterRegistry registry;
+    private AdmissionControl admission;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        admission = new AdmissionControl(registry);
+        ReflectionTestUtils.setField(admission, "maxQueued", 2);
+        ReflectionTestUtils.setField(admission, "rejectRc", "91");
+        ReflectionTestUtils.setField(admission, "budgetRc", "96");
+    }
+
+    private double shed(String listener, String reason) {
+        return registry.get("zimswitch.acceptor.shed").tag("listener", listener).tag("reason", reason).counter().count();
+    }
+
+    @Test
+    void shedsOnceMaxQueuedRequestsAreInProcessing() {
+        AdmissionControl.Gate gate = admission.get("raw");
+        long now = System.nanoTime();
+        assertThat(gate.admit(null, now)).isNull();
+        assertThat(gate.admit(null, now)).isNull();
+        assertThat(gate.admit(null, now)).isEqualTo("91");
+        assertThat(registry.get("zimswitch.acceptor.queued").tag("listener", "raw").gauge().value()).isEqualTo(2);
+
+        gate.done();
+        assertThat(gate.admit(null, now)).isNull();
+
+        assertThat(gate.toMap())
+                .containsEntry("queued", 2)
+                .containsEntry("peakQueued", 2)
+                .containsEntry("admitted", 3L)
+                .containsEntry("shedQueueFull", 1L);
+        assertThat(shed("raw", "queue-full")).isEqualTo(1);
+    }
+
+    @Test
+    void unboundedWhenMaxQueuedIsZero() {
+        ReflectionTestUtils.setField(admission, "maxQueued", 0);
+        AdmissionControl.Gate gate = admission.get("nio");
+        for (int i = 0; i < 10_000; i++) assertThat(gate.admit(null, 0)).isNull();
+        assertThat(gate.toMap()).containsEntry("shedQueueFull", 0L);
+    }
+
+    @Test
+    void overflowReleasesTheSlotAndCountsAsQueueFull() {
+        AdmissionControl.Gate gate = admission.get("raw");
+        assertThat(gate.admit(null, 0)).isNull();
+        assertThat(gate.overflow()).isEqualTo("91");
+        assertThat(gate.toMap()).containsEntry("queued", 0).containsEntry("shedQueueFull", 1L);
+        assertThat(shed("raw", "queue-full")).isEqualTo(1);
+    }
+
+    @Test
+    void rateLimitIsPerConnectionAndRefills() {
+        ReflectionTestUtils.setField(admission, "maxQueued", 0);
+        ReflectionTestUtils.setField(admission, "ratePerConnection", 10.0);
+        ReflectionTestUtils.setField(admission, "rateBurst", 2);
+        AdmissionControl.Gate gate = admission.get("jpos");
+        RateLimiter first = gate.newRateLimiter();
+        RateLimiter second = gate.newRateLimiter();
+        long now = System.nanoTime();
+
+        assertThat(gate.admit(first, now)).isNull();
+        assertThat(gate.admit(first, now)).isNull();
+        assertThat(gate.admit(first, now)).isEqualTo("91");
+        // Another connection has its own bucket
+        assertThat(gate.admit(second, now)).isNull();
+        // 10/s refills one token every 100 ms
+        assertThat(gate.admit(first, now + TimeUnit.MILLISECONDS.toNanos(100))).isNull();
+        assertThat(gate.admit(first, now + TimeUnit.MILLISECONDS.toNanos(100))).isEqualTo("91");
+
+        assertThat(gate.toMap()).containsEntry("shedRateLimited", 2L).containsEntry("admitted", 4L);
+        assertThat(shed("jpos", "rate-limit")).isEqualTo(2);
+    }
+
+    @Test
+    void noLimiterWhenRateIsOff() {
+        assertThat(admission.get("jpos").newRateLimiter()).isNull();
+    }
+
+    @Test
+    void requestsThatWaitedPastTheBudgetAreShed() {
+        AdmissionControl.Gate gate = admission.get("nio");
+        long longAgo = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+        // No budget configured
+        assertThat(gate.checkBudget(longAgo)).isNull();
+
+        ReflectionTestUtils.setField(admission, "latencyBudgetMs", 50L);
+        assertThat(gate.checkBudget(System.nanoTime())).isNull();
+        assertThat(gate.checkBudget(longAgo)).isEqualTo("96");
+        assertThat(gate.toMap()).containsEntry("shedOverBudget", 1L);
+        assertThat(shed("nio", "latency-budget")).isEqualTo(1);
+    }
+
+    @Test
+    void resetClearsCountersButKeepsWhatIsQueued() {
+        AdmissionControl.Gate gate = admission.get("raw");
+        gate.admit(null, 0);
+        gate.admit(null, 0);
+        gate.admit(null, 0);
+        gate.done();
+        admission.reset();
+        assertThat(gate.toMap())
+                .containsEntry("queued", 1)
+                .containsEntry("peakQueued", 1)
+                .containsEntry("admitted", 0L)
+                .containsEntry("shedQueueFull", 0L);
+        assertThat(admission.snapshot()).containsOnlyKeys("raw");
+    }
+}
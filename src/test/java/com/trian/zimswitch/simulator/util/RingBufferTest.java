@@ -0,0 +1,92 @@
+package com.trian.zimswitch.simulator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RingBufferTest {
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertThat(new RingBuffer<>(1).capacity()).isEqualTo(2);
+        assertThat(new RingBuffer<>(3).capacity()).isEqualTo(4);
+        assertThat(new RingBuffer<>(4).capacity()).isEqualTo(4);
+        assertThat(new RingBuffer<>(1000).capacity()).isEqualTo(1024);
+    }
+
+    @Test
+    void offerFailsWhenFullAndDrainIsFifo() {
+        RingBuffer<Integer> ring = new RingBuffer<>(4);
+        for (int i = 0; i < 4; i++) assertThat(ring.offer(i)).isTrue();
+        assertThat(ring.offer(4)).isFalse();
+        assertThat(ring.size()).isEqualTo(4);
+
+        List<Integer> out = new ArrayList<>();
+        assertThat(ring.drain(out::add, 3)).isEqualTo(3);
+        assertThat(out).containsExactly(0, 1, 2);
+        assertThat(ring.size()).isEqualTo(1);
+
+        assertThat(ring.drain(out::add, 10)).isEqualTo(1);
+        assertThat(out).containsExactly(0, 1, 2, 3);
+        assertThat(ring.drain(out::add, 10)).isZero();
+    }
+
+    @Test
+    void slotsAreReusedAfterWrapAround() {
+        RingBuffer<Integer> ring = new RingBuffer<>(4);
+        List<Integer> out = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            assertThat(ring.offer(i)).isTrue();
+            if (i % 3 == 2) ring.drain(out::add, 3);
+        }
+        ring.drain(out::add, Integer.MAX_VALUE);
+        assertThat(out).hasSize(100);
+        for (int i = 0; i < 100; i++) assertThat(out.get(i)).isEqualTo(i);
+    }
+
+    @Test
+    void concurrentProducersLoseNothingAndKeepTheirOwnOrder() throws Exception {
+        int producers = 4;
+        int perProducer = 20_000;
+        RingBuffer<long[]> ring = new RingBuffer<>(1 << 10);
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int p = 0; p < producers; p++) {
+            int id = p;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    long[] item = {id, i};
+                    while (!ring.offer(item)) Thread.onSpinWait();
+                }
+            });
+        }
+        start.countDown();
+
+        long[] next = new long[producers];
+        int total = 0;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (total < producers * perProducer && System.nanoTime() < deadline) {
+            total += ring.drain(item -> {
+                assertThat(item[1]).isEqualTo(next[(int) item[0]]);
+                next[(int) item[0]]++;
+            }, 256);
+        }
+        pool.shutdown();
+
+        assertThat(total).isEqualTo(producers * perProducer);
+        for (long n : next) assertThat(n).isEqualTo(perProducer);
+        assertThat(ring.size()).isZero();
+    }
+}